@@ -1,9 +1,16 @@
 package core;
 
 import game.chess.ChessBoard;
+import game.chess.ChessGameRecord;
+import game.chess.ChessGameStatus;
 import game.chess.ChessPiece;
 import game.chess.ChessPlayer;
+import game.chess.ChessReplayTimeline;
 import game.chess.ChessTile;
+import game.chess.engine.ChessEngine;
+import game.chess.engine.ChessOpeningBook;
+import game.chess.engine.ChessTablebase;
+import javafx.animation.AnimationTimer;
 import javafx.animation.FadeTransition;
 import javafx.beans.binding.BooleanBinding;
 import javafx.beans.binding.ObjectBinding;
@@ -15,10 +22,13 @@ import javafx.fxml.FXML;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
+import javafx.scene.control.Slider;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
 import javafx.util.Duration;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.EnumSet;
 import java.util.Set;
 import java.util.function.Function;
@@ -29,17 +39,109 @@ final class Controller {
     
     private final ChessBoard chessBoard;
     
+    private final ChessEngine chessEngine;
+    
     Controller(final Scene scene, final ChessBoard chessBoard) {
         
         this.scene = scene;
         
         this.chessBoard = chessBoard;
         
+        chessEngine = new ChessEngine(chessBoard.getTranspositionTable());
+        
+        // Leave one core to the FX application thread
+        chessEngine.setThreads(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+        
+        // -Dchess.book=<file> plays the openings from a book built with ChessOpeningBook.write
+        
+        final String openingBookPath = System.getProperty("chess.book");
+        
+        if (openingBookPath != null) {
+            
+            try {
+                
+                chessEngine.setOpeningBook(ChessOpeningBook.open(Path.of(openingBookPath)));
+                
+            } catch (final IOException | IllegalArgumentException exception) {
+                
+                System.err.println("Cannot open opening book " + openingBookPath + ": " + exception.getMessage());
+                
+            }
+            
+        }
+        
+        // -Dchess.tablebase=<directory> plays and hints endgames from tables built by ChessTablebaseGenerator
+        
+        final String tablebasePath = System.getProperty("chess.tablebase");
+        
+        if (tablebasePath != null) {
+            
+            try {
+                
+                final ChessTablebase tablebase = ChessTablebase.open(Path.of(tablebasePath));
+                
+                chessEngine.setTablebase(tablebase);
+                
+                chessBoard.setTablebase(tablebase);
+                
+            } catch (final IOException ioException) {
+                
+                System.err.println("Cannot open tablebase " + tablebasePath + ": " + ioException.getMessage());
+                
+            }
+            
+        }
+        
+        // -Dchess.replay=<file> opens a game written with ChessGameRecord.write on the replay slider
+        
+        final String replayPath = System.getProperty("chess.replay");
+        
+        if (replayPath != null) {
+            
+            try {
+                
+                replayTimelineProperty.set(ChessReplayTimeline.of(ChessGameRecord.read(Path.of(replayPath))));
+                
+            } catch (final IOException | IllegalArgumentException exception) {
+                
+                System.err.println("Cannot open replay " + replayPath + ": " + exception.getMessage());
+                
+            }
+            
+        }
+        
     }
     
     private final Set<KeyCode> pressedKeys = EnumSet.noneOf(KeyCode.class);
     
     private final BooleanProperty oPressedProperty = new SimpleBooleanProperty(false);
+    
+    // Game on the replay slider, null while the slider is hidden
+    private final ObjectProperty<ChessReplayTimeline> replayTimelineProperty = new SimpleObjectProperty<>(null);
+    
+    // Steps through the move history by one move per frame while the left or right arrow is held
+    private final AnimationTimer scrubTimer = new AnimationTimer() {
+        
+        @Override
+        public void handle(final long now) {
+            
+            if (pressedKeys.contains(KeyCode.LEFT)) {
+                
+                chessBoard.undo();
+                
+            } else if (pressedKeys.contains(KeyCode.RIGHT)) {
+                
+                chessBoard.redo();
+                
+            } else {
+                
+                stop();
+                
+            }
+            
+        }
+        
+    };
 
     private BooleanBinding overlayVisibleBinding;
     
@@ -52,6 +154,9 @@ final class Controller {
     @FXML
     private Label pieceLabel;
     
+    @FXML
+    private Slider replaySlider;
+    
     @FXML
     private void initialize() {
         
@@ -73,11 +178,27 @@ final class Controller {
         
         playerLabel.textProperty().bind(new ObjectBinding<>() {
 
-            { super.bind(chessBoard.currentChessPlayerProperty()); }
+            { super.bind(chessBoard.currentChessPlayerProperty(), chessBoard.gameStatusProperty()); }
             
             @Override
             protected String computeValue() {
                 
+                final ChessGameStatus gameStatus = chessBoard.getGameStatus();
+                
+                if (gameStatus == ChessGameStatus.CHECKMATE) {
+                    
+                    // The player to move has been mated
+                    
+                    return nameFunction.apply((chessBoard.getCurrentChessPlayer() == chessBoard.getChessPlayerOne())
+                            ? chessBoard.getChessPlayerTwo()
+                            : chessBoard.getChessPlayerOne()) + " wins by checkmate";
+                    
+                } else if (gameStatus.isDraw()) {
+                    
+                    return "Draw: " + gameStatus.getDisplayName();
+                    
+                }
+                
                 return nameFunction.apply(chessBoard.getCurrentChessPlayer());
             }
             
@@ -144,6 +265,26 @@ final class Controller {
         
         startGameButton.setOnAction(actionEvent -> startButtonFade.playFromStart());
         
+        // Every value the slider passes through is seeked, one keyframe and the changed tiles at a time
+        
+        replaySlider.visibleProperty().bind(replayTimelineProperty.isNotNull().and(chessBoard.gameStartedProperty()).and(overlayVisibleBinding));
+        
+        replaySlider.valueProperty().addListener((observable, oldValue, newValue) -> {
+            
+            final ChessReplayTimeline replayTimeline = replayTimelineProperty.get();
+            
+            if (replayTimeline != null) {
+                
+                chessBoard.seek(replayTimeline, (int) Math.round(newValue.doubleValue()));
+                
+            }
+            
+        });
+        
+        replayTimelineProperty.addListener((observable, oldReplayTimeline, newReplayTimeline) -> showReplay(newReplayTimeline));
+        
+        showReplay(replayTimelineProperty.get());
+        
     }
     
     private void keyPress(final KeyCode keyCode) {
@@ -164,10 +305,53 @@ final class Controller {
                     
                 }
                 
+                case T -> chessBoard.setThreatOverlayVisible(!chessBoard.isThreatOverlayVisible());
+                
+                case H -> chessBoard.showHint();
+                
+                case BACK_SPACE -> chessBoard.takeBack();
+                
+                // Put the game so far on the replay slider, or take the slider away and play on from the shown position
+                
+                case R -> replayTimelineProperty.set((replayTimelineProperty.get() == null) ? ChessReplayTimeline.of(chessBoard.toGameRecord()) : null);
+                
+                case LEFT, RIGHT -> scrubTimer.start();
+                
+                // Hand a player over to the engine, or back
+                
+                case DIGIT1 -> toggleChessEngine(chessBoard.getChessPlayerOne());
+                
+                case DIGIT2 -> toggleChessEngine(chessBoard.getChessPlayerTwo());
+                
             }
             
         }
         
     }
     
+    // Sets the slider up for the timeline, on its last ply, or ends the replay when there is none
+    private void showReplay(final ChessReplayTimeline replayTimeline) {
+        
+        if (replayTimeline != null) {
+            
+            replaySlider.setMax(replayTimeline.getPlyCount());
+            
+            replaySlider.setValue(replayTimeline.getPlyCount());
+            
+            chessBoard.seek(replayTimeline, replayTimeline.getPlyCount());
+            
+        } else {
+            
+            chessBoard.endReplay();
+            
+        }
+        
+    }
+    
+    private void toggleChessEngine(final ChessPlayer chessPlayer) {
+        
+        chessPlayer.setChessEngine((chessPlayer.getChessEngine() == null) ? chessEngine : null);
+        
+    }
+    
 }
\ No newline at end of file
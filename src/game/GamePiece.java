@@ -41,4 +41,10 @@ public abstract class GamePiece<G extends GameBoard<?, ?>, T extends GamePlayer<
         
     }
     
+    protected void decrementMoveCount() {
+        
+        moveCountProperty.set(moveCountProperty.get() - 1);
+        
+    }
+    
 }
\ No newline at end of file
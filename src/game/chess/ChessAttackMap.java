@@ -0,0 +1,185 @@
+package game.chess;
+
+import java.util.Arrays;
+
+public final class ChessAttackMap {
+    
+    // Squares attacked by each side, kept up to date from the squares that changed since the last update.
+    // Sliders see through the enemy king, so a king can never step back along the line of a check.
+    
+    // Attacks of the piece on each square (0 for empty squares)
+    private final long[] pieceAttacks = new long[ChessPosition.SQUARE_COUNT];
+    
+    // Side that the attacks of each square were counted for
+    private final byte[] pieceAttackColors = new byte[ChessPosition.SQUARE_COUNT];
+    
+    // How many pieces of each side attack each square
+    private final byte[][] attackCounts = new byte[2][ChessPosition.SQUARE_COUNT];
+    
+    private final long[] attackedSquares = new long[2];
+    
+    // Piece bitboards as of the last update, to find the squares that changed
+    private final long[] pieceBitboards = new long[ChessPosition.PIECE_COUNT];
+    
+    public ChessAttackMap() {
+        
+        super();
+        
+    }
+    
+    public ChessAttackMap(final ChessPosition chessPosition) {
+        
+        reset(chessPosition);
+        
+    }
+    
+    // Computes every attack from scratch.
+    public void reset(final ChessPosition chessPosition) {
+        
+        Arrays.fill(pieceAttacks, 0L);
+        Arrays.fill(attackCounts[ChessPosition.WHITE], (byte) 0);
+        Arrays.fill(attackCounts[ChessPosition.BLACK], (byte) 0);
+        Arrays.fill(attackedSquares, 0L);
+        Arrays.fill(pieceBitboards, 0L);
+        
+        update(chessPosition);
+        
+    }
+    
+    // Brings the map in line with the position after any number of moves made or unmade. Only the pieces
+    // on changed squares and the sliders whose lines ran through them are recomputed.
+    public void update(final ChessPosition chessPosition) {
+        
+        long changedSquares = 0L;
+        
+        for (int piece = 0; piece < ChessPosition.PIECE_COUNT; piece++) {
+            
+            final long pieces = chessPosition.getPieceBitboard(piece);
+            
+            changedSquares |= pieceBitboards[piece] ^ pieces;
+            
+            pieceBitboards[piece] = pieces;
+            
+        }
+        
+        if (changedSquares == 0L) {
+            
+            return;
+            
+        }
+        
+        long sliders = 0L;
+        
+        for (int color = ChessPosition.WHITE; color <= ChessPosition.BLACK; color++) {
+            
+            sliders |= pieceBitboards[ChessPosition.piece(color, ChessPosition.BISHOP)]
+                    | pieceBitboards[ChessPosition.piece(color, ChessPosition.ROOK)]
+                    | pieceBitboards[ChessPosition.piece(color, ChessPosition.QUEEN)];
+            
+        }
+        
+        long recomputedSquares = changedSquares;
+        
+        for (long remaining = sliders & ~changedSquares; remaining != 0L; remaining &= remaining - 1) {
+            
+            final int square = Long.numberOfTrailingZeros(remaining);
+            
+            if ((pieceAttacks[square] & changedSquares) != 0L) {
+                
+                recomputedSquares |= 1L << square;
+                
+            }
+            
+        }
+        
+        for (long remaining = recomputedSquares; remaining != 0L; remaining &= remaining - 1) {
+            
+            final int square = Long.numberOfTrailingZeros(remaining);
+            
+            final long oldAttacks = pieceAttacks[square];
+            
+            if (oldAttacks != 0L) {
+                
+                addAttacks(pieceAttackColors[square], oldAttacks, -1);
+                
+            }
+            
+            final int piece = chessPosition.getPiece(square);
+            
+            final long newAttacks = (piece == ChessPosition.NO_PIECE) ? 0L : computeAttacks(chessPosition, piece, square);
+            
+            pieceAttacks[square] = newAttacks;
+            
+            if (newAttacks != 0L) {
+                
+                pieceAttackColors[square] = (byte) ChessPosition.pieceColor(piece);
+                
+                addAttacks(pieceAttackColors[square], newAttacks, 1);
+                
+            }
+            
+        }
+        
+    }
+    
+    public long getAttackedSquares(final int color) {
+        
+        return attackedSquares[color];
+    }
+    
+    public boolean isSquareAttacked(final int square, final int attackerColor) {
+        
+        return (attackedSquares[attackerColor] & (1L << square)) != 0L;
+    }
+    
+    public int getAttackerCount(final int square, final int attackerColor) {
+        
+        return attackCounts[attackerColor][square];
+    }
+    
+    public boolean isInCheck(final int color) {
+        
+        final long king = pieceBitboards[ChessPosition.piece(color, ChessPosition.KING)];
+        
+        return (king != 0L) && ((attackedSquares[color ^ 1] & king) != 0L);
+    }
+    
+    private long computeAttacks(final ChessPosition chessPosition, final int piece, final int square) {
+        
+        final int color = ChessPosition.pieceColor(piece);
+        
+        final long occupancy = chessPosition.getOccupancy()
+                & ~chessPosition.getPieceBitboard(ChessPosition.piece(color ^ 1, ChessPosition.KING));
+        
+        return ChessAttacks.attacks(piece, square, occupancy);
+    }
+    
+    private void addAttacks(final int color, final long attacks, final int delta) {
+        
+        final byte[] counts = attackCounts[color];
+        
+        long attacked = attackedSquares[color];
+        
+        for (long remaining = attacks; remaining != 0L; remaining &= remaining - 1) {
+            
+            final int square = Long.numberOfTrailingZeros(remaining);
+            
+            counts[square] += delta;
+            
+            if (counts[square] == 0) {
+                
+                attacked &= ~(1L << square);
+                
+            } else {
+                
+                attacked |= 1L << square;
+                
+            }
+            
+        }
+        
+        attackedSquares[color] = attacked;
+        
+    }
+    
+}
\ No newline at end of file
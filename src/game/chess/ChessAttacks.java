@@ -0,0 +1,318 @@
+package game.chess;
+
+public final class ChessAttacks {
+    
+    private static final long[] KNIGHT_ATTACKS = new long[ChessPosition.SQUARE_COUNT];
+    
+    private static final long[] KING_ATTACKS = new long[ChessPosition.SQUARE_COUNT];
+    
+    private static final long[][] PAWN_ATTACKS = new long[2][ChessPosition.SQUARE_COUNT];
+    
+    private static final long[][] BETWEEN = new long[ChessPosition.SQUARE_COUNT][ChessPosition.SQUARE_COUNT];
+    
+    private static final long[][] LINE = new long[ChessPosition.SQUARE_COUNT][ChessPosition.SQUARE_COUNT];
+    
+    private static final int[][] KNIGHT_DIRECTIONS = {{1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}};
+    
+    private static final int[][] KING_DIRECTIONS = {{1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}, {-1, -1}, {0, -1}, {1, -1}};
+    
+    private static final int[][] ROOK_DIRECTIONS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+    
+    private static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+    
+    // Fancy magic bitboards: every square owns a slice of one shared table, indexed by
+    // ((occupancy & mask) * magic) >>> shift. The magics were found by trial with sparse random numbers.
+    
+    private static final long[] ROOK_MASKS = new long[ChessPosition.SQUARE_COUNT];
+    
+    private static final long[] ROOK_MAGICS = {
+            0x7080024000108620L, 0x0040200010004000L, 0x0100081020004500L, 0x3880048110000801L,
+            0x4200200200080410L, 0x2400900400082002L, 0x45000B000F860004L, 0x220004038040A116L,
+            0x010280002084400AL, 0x0026402004401000L, 0x0045002002110048L, 0x0043002300100009L,
+            0x004280801C002800L, 0x4001800401801200L, 0x1005000411000200L, 0x408100120040A100L,
+            0x0160808000401020L, 0x0020004008205000L, 0x0000430010200300L, 0x4001818008005000L,
+            0x1D04008008008004L, 0x6002080110204004L, 0x2009040001081002L, 0x8094020020804401L,
+            0x00C00049800080A7L, 0x80015000C0002000L, 0xC000220200108040L, 0x00A8018480100108L,
+            0x0818008080080401L, 0x0A00040080020080L, 0x1A01080400104A31L, 0x000200A200011044L,
+            0x4080006001400040L, 0x240080400C802000L, 0x880500104100200AL, 0x0C02002012004008L,
+            0x0000800800800401L, 0x0402002004040010L, 0x0A06888104001002L, 0x01A0A400A2000041L,
+            0x00C0008000428022L, 0x5048C0E010054000L, 0x0010012000848011L, 0x0004100209010020L,
+            0x8000040008008080L, 0x2C08020004008080L, 0x0800020841040010L, 0x0006004408820019L,
+            0x1010400030800180L, 0x0280882000400880L, 0x02810098A0004300L, 0x02E4914840220200L,
+            0xA094800802040080L, 0x00220010A8045200L, 0x8000810210080400L, 0x2004800100016280L,
+            0x0000201040800D01L, 0x00090010E0854001L, 0x0000090040200011L, 0x014B0008A4300121L,
+            0x1806002004100802L, 0x0883000400020801L, 0x00101CA228051004L, 0x0438088100402402L
+    };
+    
+    private static final int[] ROOK_SHIFTS = new int[ChessPosition.SQUARE_COUNT];
+    
+    private static final int[] ROOK_OFFSETS = new int[ChessPosition.SQUARE_COUNT];
+    
+    private static final long[] BISHOP_MASKS = new long[ChessPosition.SQUARE_COUNT];
+    
+    private static final long[] BISHOP_MAGICS = {
+            0x0229120802002200L, 0x00C4210809010800L, 0x080808210322020CL, 0x0628204040010201L,
+            0x0006021148000000L, 0x00008804C0040120L, 0x0040411048A0AC00L, 0x0000218218904002L,
+            0x4000091001020402L, 0xC004040410A42100L, 0x2224040800810608L, 0x0224044400800202L,
+            0x0080040420201000L, 0x2800010402410300L, 0x0000284814100882L, 0x0811010090900800L,
+            0x0840402424880602L, 0x00A00C4214142081L, 0x4990005E02801504L, 0x008C010802482841L,
+            0x1000821400A04038L, 0x01420054C9042000L, 0x2080405201700800L, 0x082200804A00C400L,
+            0x28040480C0100489L, 0x00041080841000C1L, 0x0224120174002400L, 0x0060124008004040L,
+            0x0011040082002101L, 0x080202802808900BL, 0x0004008101084110L, 0x4820408021008800L,
+            0x300608A000426200L, 0x30080808000401A0L, 0x050361880C300020L, 0x0082080800020A00L,
+            0x0040008208110100L, 0x0008882200644102L, 0x031004004800820EL, 0x0841441024110100L,
+            0x0089211820404004L, 0x0002013003110800L, 0x80D3A01050001800L, 0x0C00802014410801L,
+            0x800102020C000204L, 0x0004080048122100L, 0x00A0420200500200L, 0x0322080200360080L,
+            0x0816020282401008L, 0x0000840412428040L, 0x0108408404291024L, 0x0420080021981001L,
+            0x8000102020825004L, 0x110244A038024000L, 0x02502009040A8810L, 0x0032820404009000L,
+            0x0A88210100A0A004L, 0x1920060082211024L, 0x0010010100411000L, 0x4003084812104420L,
+            0x20800012D0020220L, 0x0600022004109086L, 0x2020080208082120L, 0x052444500C002080L
+    };
+    
+    private static final int[] BISHOP_SHIFTS = new int[ChessPosition.SQUARE_COUNT];
+    
+    private static final int[] BISHOP_OFFSETS = new int[ChessPosition.SQUARE_COUNT];
+    
+    private static final int ROOK_TABLE_SIZE = 102_400;
+    
+    private static final int BISHOP_TABLE_SIZE = 5_248;
+    
+    private static final long[] SLIDER_ATTACKS = new long[ROOK_TABLE_SIZE + BISHOP_TABLE_SIZE];
+    
+    static {
+        
+        for (int square = 0; square < ChessPosition.SQUARE_COUNT; square++) {
+            
+            KNIGHT_ATTACKS[square] = leaperAttacks(square, KNIGHT_DIRECTIONS);
+            
+            KING_ATTACKS[square] = leaperAttacks(square, KING_DIRECTIONS);
+            
+            PAWN_ATTACKS[ChessPosition.WHITE][square] = leaperAttacks(square, new int[][] {{-1, -1}, {1, -1}});
+            
+            PAWN_ATTACKS[ChessPosition.BLACK][square] = leaperAttacks(square, new int[][] {{-1, 1}, {1, 1}});
+            
+        }
+        
+        initSliderTable(ROOK_DIRECTIONS, ROOK_MASKS, ROOK_MAGICS, ROOK_SHIFTS, ROOK_OFFSETS, 0);
+        
+        initSliderTable(BISHOP_DIRECTIONS, BISHOP_MASKS, BISHOP_MAGICS, BISHOP_SHIFTS, BISHOP_OFFSETS, ROOK_TABLE_SIZE);
+        
+        for (int from = 0; from < ChessPosition.SQUARE_COUNT; from++) {
+            
+            for (int to = 0; to < ChessPosition.SQUARE_COUNT; to++) {
+                
+                final long ends = (1L << from) | (1L << to);
+                
+                if ((rookAttacks(from, 0L) & (1L << to)) != 0L) {
+                    
+                    BETWEEN[from][to] = rookAttacks(from, 1L << to) & rookAttacks(to, 1L << from);
+                    
+                    LINE[from][to] = (rookAttacks(from, 0L) & rookAttacks(to, 0L)) | ends;
+                    
+                } else if ((bishopAttacks(from, 0L) & (1L << to)) != 0L) {
+                    
+                    BETWEEN[from][to] = bishopAttacks(from, 1L << to) & bishopAttacks(to, 1L << from);
+                    
+                    LINE[from][to] = (bishopAttacks(from, 0L) & bishopAttacks(to, 0L)) | ends;
+                    
+                }
+                
+            }
+            
+        }
+        
+    }
+    
+    private ChessAttacks() {
+        
+        super();
+        
+    }
+    
+    public static long knightAttacks(final int square) {
+        
+        return KNIGHT_ATTACKS[square];
+    }
+    
+    public static long kingAttacks(final int square) {
+        
+        return KING_ATTACKS[square];
+    }
+    
+    public static long pawnAttacks(final int color, final int square) {
+        
+        return PAWN_ATTACKS[color][square];
+    }
+    
+    public static long rookAttacks(final int square, final long occupancy) {
+        
+        return SLIDER_ATTACKS[ROOK_OFFSETS[square]
+                + (int) (((occupancy & ROOK_MASKS[square]) * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square])];
+    }
+    
+    public static long bishopAttacks(final int square, final long occupancy) {
+        
+        return SLIDER_ATTACKS[BISHOP_OFFSETS[square]
+                + (int) (((occupancy & BISHOP_MASKS[square]) * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square])];
+    }
+    
+    public static long queenAttacks(final int square, final long occupancy) {
+        
+        return rookAttacks(square, occupancy) | bishopAttacks(square, occupancy);
+    }
+    
+    // Squares strictly between two squares sharing a rank, file or diagonal (empty otherwise).
+    public static long between(final int square1, final int square2) {
+        
+        return BETWEEN[square1][square2];
+    }
+    
+    // The whole rank, file or diagonal through two squares (empty if they are not aligned).
+    public static long line(final int square1, final int square2) {
+        
+        return LINE[square1][square2];
+    }
+    
+    // Squares attacked by a piece of the given type standing on the square (pawns use their capture squares).
+    public static long attacks(final int piece, final int square, final long occupancy) {
+        
+        return switch (ChessPosition.pieceType(piece)) {
+            
+            case ChessPosition.PAWN -> pawnAttacks(ChessPosition.pieceColor(piece), square);
+            
+            case ChessPosition.KNIGHT -> knightAttacks(square);
+            
+            case ChessPosition.BISHOP -> bishopAttacks(square, occupancy);
+            
+            case ChessPosition.ROOK -> rookAttacks(square, occupancy);
+            
+            case ChessPosition.QUEEN -> queenAttacks(square, occupancy);
+            
+            case ChessPosition.KING -> kingAttacks(square);
+            
+            default -> 0L;
+            
+        };
+    }
+    
+    private static long leaperAttacks(final int square, final int[][] directions) {
+        
+        final int x = ChessPosition.squareX(square);
+        final int y = ChessPosition.squareY(square);
+        
+        long attacks = 0L;
+        
+        for (final int[] direction : directions) {
+            
+            final int targetX = x + direction[0];
+            final int targetY = y + direction[1];
+            
+            if (onBoard(targetX, targetY)) {
+                
+                attacks |= 1L << ChessPosition.square(targetX, targetY);
+                
+            }
+            
+        }
+        
+        return attacks;
+    }
+    
+    private static long slidingAttacks(final int square, final long occupancy, final int[][] directions) {
+        
+        long attacks = 0L;
+        
+        for (final int[] direction : directions) {
+            
+            int x = ChessPosition.squareX(square) + direction[0];
+            int y = ChessPosition.squareY(square) + direction[1];
+            
+            while (onBoard(x, y)) {
+                
+                final long bit = 1L << ChessPosition.square(x, y);
+                
+                attacks |= bit;
+                
+                if ((occupancy & bit) != 0L) {
+                    
+                    break;
+                    
+                }
+                
+                x += direction[0];
+                y += direction[1];
+                
+            }
+            
+        }
+        
+        return attacks;
+    }
+    
+    // Relevant occupancy: the rays without their last square, since a blocker there never changes the result.
+    private static long relevantMask(final int square, final int[][] directions) {
+        
+        long mask = 0L;
+        
+        for (final int[] direction : directions) {
+            
+            int x = ChessPosition.squareX(square) + direction[0];
+            int y = ChessPosition.squareY(square) + direction[1];
+            
+            while (onBoard(x + direction[0], y + direction[1])) {
+                
+                mask |= 1L << ChessPosition.square(x, y);
+                
+                x += direction[0];
+                y += direction[1];
+                
+            }
+            
+        }
+        
+        return mask;
+    }
+    
+    private static void initSliderTable(final int[][] directions, final long[] masks, final long[] magics,
+                                        final int[] shifts, final int[] offsets, final int tableStart) {
+        
+        int offset = tableStart;
+        
+        for (int square = 0; square < ChessPosition.SQUARE_COUNT; square++) {
+            
+            final long mask = relevantMask(square, directions);
+            
+            final int bits = Long.bitCount(mask);
+            
+            masks[square] = mask;
+            
+            shifts[square] = 64 - bits;
+            
+            offsets[square] = offset;
+            
+            // Enumerate every subset of the mask (Carry-Rippler trick)
+            
+            long subset = 0L;
+            
+            do {
+                
+                final int index = (int) ((subset * magics[square]) >>> shifts[square]);
+                
+                SLIDER_ATTACKS[offset + index] = slidingAttacks(square, subset, directions);
+                
+                subset = (subset - mask) & mask;
+                
+            } while (subset != 0L);
+            
+            offset += 1 << bits;
+            
+        }
+        
+    }
+    
+    private static boolean onBoard(final int x, final int y) {
+        
+        return (x >= 0) && (x < 8) && (y >= 0) && (y < 8);
+    }
+    
+}
\ No newline at end of file
@@ -1,15 +1,22 @@
 package game.chess;
 
 import game.GameBoard;
+import game.chess.engine.ChessEngine;
+import game.chess.engine.ChessTablebase;
+import game.chess.engine.ChessTranspositionTable;
 import javafx.animation.KeyFrame;
 import javafx.animation.KeyValue;
 import javafx.animation.Timeline;
 import javafx.animation.TranslateTransition;
+import javafx.application.Platform;
 import javafx.beans.binding.BooleanBinding;
 import javafx.beans.binding.DoubleBinding;
 import javafx.beans.binding.ObjectBinding;
+import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.ReadOnlyObjectProperty;
 import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.collections.ObservableList;
 import javafx.geometry.Point2D;
 import javafx.scene.Node;
 import javafx.scene.layout.GridPane;
@@ -18,7 +25,11 @@ import javafx.scene.layout.StackPane;
 import javafx.scene.paint.Color;
 import javafx.util.Duration;
 
-import java.util.function.BiConsumer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public final class ChessBoard
         extends GameBoard<ChessPlayer, GridPane> {
@@ -31,6 +42,60 @@ public final class ChessBoard
     
     private final ChessTile[][] chessTiles = new ChessTile[CHESS_BOARD_LENGTH][CHESS_BOARD_LENGTH];
     
+    private final ChessPosition chessPosition = new ChessPosition();
+    
+    // Legal destination squares of each source square for the current turn, generated on the first
+    // selection of the turn and dropped when the turn count changes
+    
+    private final long[] legalDestinations = new long[ChessPosition.SQUARE_COUNT];
+    
+    private final int[] legalMoves = new int[ChessMove.MAX_MOVES];
+    
+    private boolean legalDestinationsValid = false;
+    
+    // Legal destinations of the selected piece
+    private long selectedDestinations = 0L;
+    
+    private final ChessAttackMap chessAttackMap = new ChessAttackMap();
+    
+    private final BooleanProperty threatOverlayVisibleProperty = new SimpleBooleanProperty(false);
+    
+    // Tiles currently styled as threatened
+    private long threatenedSquares = 0L;
+    
+    private static final String THREATENED_TILE_STYLE_CLASS = "threatened-chess-tile";
+    
+    // Endgame tables behind showHint, null when there are none
+    private ChessTablebase tablebase;
+    
+    // Tiles currently styled as the hinted move, cleared when the turn changes
+    private long hintSquares = 0L;
+    
+    private static final String HINT_TILE_STYLE_CLASS = "hint-chess-tile";
+    
+    // Moves taken back with undo, the last one on top. The rest of the undo state (captured piece, castling
+    // rights, en passant square, halfmove clock and Zobrist key) lives on the position's own undo stack.
+    // Grown by doubling and emptied by any new move.
+    
+    private static final int INITIAL_REDO_CAPACITY = 256;
+    
+    private int[] redoMoves = new int[INITIAL_REDO_CAPACITY];
+    
+    private int redoCount = 0;
+    
+    // Timeline being replayed, or null. While it is set the board only shows positions: seek is the only
+    // way to change them, the engine is not asked to move and the game does not end. The shown ply is the
+    // move count of the position.
+    private ChessReplayTimeline replayTimeline;
+    
+    private final ChessPosition seekPosition = new ChessPosition();
+    
+    public static final int DEFAULT_TRANSPOSITION_TABLE_MEGABYTES = 16;
+    
+    private final ChessTranspositionTable transpositionTable = new ChessTranspositionTable(DEFAULT_TRANSPOSITION_TABLE_MEGABYTES);
+    
+    private final ReadOnlyObjectWrapper<ChessGameStatus> gameStatusProperty = new ReadOnlyObjectWrapper<>(ChessGameStatus.ONGOING);
+    
     private final ReadOnlyObjectWrapper<ChessTile> hoveringChessTileProperty = new ReadOnlyObjectWrapper<>();
     
     private final ReadOnlyObjectWrapper<ChessTile> selectedChessTileProperty = new ReadOnlyObjectWrapper<>();
@@ -47,7 +112,16 @@ public final class ChessBoard
     
     private final InnerShadow selectedTileEffect = new InnerShadow(35.0, Color.MEDIUMPURPLE);
     
+    // Shared by every reachable tile; always first in a tile's effect chain, so its input stays null
+    private final InnerShadow reachableTileEffect = new InnerShadow(20.0, Color.MEDIUMSEAGREEN);
+    
     private boolean pieceAnimating = false;
+    
+    // Set while redo plays a move again, whose game end, if any, was reported when it was first played
+    private boolean redoing = false;
+    
+    // Bumped on every engine request and cancellation, so stale engine answers can be recognised
+    private int engineRequestCount = 0;
 
     private final TranslateTransition pieceTransition = new TranslateTransition(Duration.millis(500));
     
@@ -57,6 +131,13 @@ public final class ChessBoard
     
     public ChessBoard() {
         
+        this(ChessPosition.startPosition());
+        
+    }
+    
+    // Sets the board up in the given position, taking over its move history
+    public ChessBoard(final ChessPosition initialChessPosition) {
+        
         super(new GridPane(), 0);
         
         final GridPane chessBoardPane = getNode();
@@ -102,10 +183,14 @@ public final class ChessBoard
                 
                 getEffectTypes().add(PAUSED_EFFECT);
                 
+                cancelEngineMove(getCurrentChessPlayer().getChessEngine());
+                
             } else {
                 
                 getEffectTypes().remove(PAUSED_EFFECT);
                 
+                requestEngineMove();
+                
             }
             
         });
@@ -158,6 +243,8 @@ public final class ChessBoard
                 
             }
             
+            setSelectedDestinations((newSelectedChessTile == null) ? 0L : getLegalDestinations(newSelectedChessTile.getSquare()));
+            
         });
         
         validMoveProperty = new BooleanBinding() {
@@ -167,19 +254,13 @@ public final class ChessBoard
             @Override
             protected boolean computeValue() {
                 
-                final ChessTile sourceChessTile = getSelectedChessTile();
-
                 final ChessTile destinationChessTile = getHoveringChessTile();
                 
-                if ((sourceChessTile == null)
-                        || (destinationChessTile == null)
-                        || (sourceChessTile == destinationChessTile)) {
-                    
-                    return false;
-                    
-                }
+                // The selected piece's destinations were generated when it was selected
                 
-                return sourceChessTile.getChessPiece().checkMove(sourceChessTile, destinationChessTile);
+                return (getSelectedChessTile() != null)
+                        && (destinationChessTile != null)
+                        && ((selectedDestinations & (1L << destinationChessTile.getSquare())) != 0L);
             }
             
         };
@@ -202,78 +283,61 @@ public final class ChessBoard
 
         };
         
-        // Board pieces setup:
+        turnCountProperty.addListener((observable, oldTurnCount, newTurnCount) -> updateTurn());
         
-        record PlayerTypePair(ChessPlayer chessPlayer, ChessPiece.Type chessPieceType) { }
-        
-        record Coordinate(int x, int y) { }
-        
-        final BiConsumer<PlayerTypePair, Coordinate> setupConsumer = (playerTypePair, coordinate) -> {
+        for (final ChessPlayer chessPlayer : gamePlayers) {
             
-            final ChessPlayer chessPlayer = playerTypePair.chessPlayer;
+            chessPlayer.chessEngineProperty().addListener((observable, oldChessEngine, newChessEngine) -> {
+                
+                cancelEngineMove(oldChessEngine);
+                
+                requestEngineMove();
+                
+            });
             
-            final var chessPiece = new ChessPiece(ChessBoard.this, chessPlayer, playerTypePair.chessPieceType);
+        }
+        
+        threatOverlayVisibleProperty.addListener((observable, wasVisible, nowVisible) -> updateThreatOverlay());
+        
+        setChessPosition(initialChessPosition);
+        
+    }
+    
+    public static ChessBoard fromFen(final CharSequence fen) {
+        
+        return new ChessBoard(ChessFen.parse(fen));
+    }
+    
+    private void updateTurn() {
+        
+        legalDestinationsValid = false;
+        
+        clearHint();
+        
+        updateThreatOverlay();
+        
+        if (replayTimeline != null) {
             
-            final ChessTile chessTile = chessTiles[coordinate.x][coordinate.y];
+            // Only the status is shown while replaying
             
-            chessTile.setChessPiece(chessPiece);
+            gameStatusProperty.set(ChessGameStatus.of(chessPosition));
             
-            chessPiece.setChessTile(chessTile);
+        } else {
             
-            chessPlayer.getGamePieces().add(chessPiece);
+            if (redoing) {
+                
+                gameStatusProperty.set(ChessGameStatus.of(chessPosition));
+                
+            } else {
+                
+                updateGameStatus();
+                
+            }
             
-        };
-        
-        // Player 1 Pawns:
-        for (int i = 0; i < 8; i++) {
-
-            setupConsumer.accept(new PlayerTypePair(chessPlayerOne, ChessPiece.Type.PAWN), new Coordinate(i, 6));
+            requestEngineMove();
             
         }
         
-        // Player 1 Rooks:
-        setupConsumer.accept(new PlayerTypePair(chessPlayerOne, ChessPiece.Type.ROOK), new Coordinate(0, 7));
-        setupConsumer.accept(new PlayerTypePair(chessPlayerOne, ChessPiece.Type.ROOK), new Coordinate(7, 7));
-        
-        // Player 1 Knights:
-        setupConsumer.accept(new PlayerTypePair(chessPlayerOne, ChessPiece.Type.KNIGHT), new Coordinate(1, 7));
-        setupConsumer.accept(new PlayerTypePair(chessPlayerOne, ChessPiece.Type.KNIGHT), new Coordinate(6, 7));
-
-        // Player 1 Bishops:
-        setupConsumer.accept(new PlayerTypePair(chessPlayerOne, ChessPiece.Type.BISHOP), new Coordinate(2, 7));
-        setupConsumer.accept(new PlayerTypePair(chessPlayerOne, ChessPiece.Type.BISHOP), new Coordinate(5, 7));
-
-        // Player 1 Queen:
-        setupConsumer.accept(new PlayerTypePair(chessPlayerOne, ChessPiece.Type.QUEEN), new Coordinate(3, 7));
-
-        // Player 1 King:
-        setupConsumer.accept(new PlayerTypePair(chessPlayerOne, ChessPiece.Type.KING), new Coordinate(4, 7));
-        
-        // Player 2 Pawns:
-        for (int i = 0; i < 8; i++) {
-
-            setupConsumer.accept(new PlayerTypePair(chessPlayerTwo, ChessPiece.Type.PAWN), new Coordinate(i, 1));
-
-        }
-
-        // Player 2 Rooks:
-        setupConsumer.accept(new PlayerTypePair(chessPlayerTwo, ChessPiece.Type.ROOK), new Coordinate(0, 0));
-        setupConsumer.accept(new PlayerTypePair(chessPlayerTwo, ChessPiece.Type.ROOK), new Coordinate(7, 0));
-
-        // Player 2 Knights:
-        setupConsumer.accept(new PlayerTypePair(chessPlayerTwo, ChessPiece.Type.KNIGHT), new Coordinate(1, 0));
-        setupConsumer.accept(new PlayerTypePair(chessPlayerTwo, ChessPiece.Type.KNIGHT), new Coordinate(6, 0));
-
-        // Player 2 Bishops:
-        setupConsumer.accept(new PlayerTypePair(chessPlayerTwo, ChessPiece.Type.BISHOP), new Coordinate(2, 0));
-        setupConsumer.accept(new PlayerTypePair(chessPlayerTwo, ChessPiece.Type.BISHOP), new Coordinate(5, 0));
-
-        // Player 2 Queen:
-        setupConsumer.accept(new PlayerTypePair(chessPlayerTwo, ChessPiece.Type.QUEEN), new Coordinate(3, 0));
-
-        // Player 2 King:
-        setupConsumer.accept(new PlayerTypePair(chessPlayerTwo, ChessPiece.Type.KING), new Coordinate(4, 0));
-        
     }
     
     public static final int START_ANIMATION_MILLISECONDS = 100;
@@ -283,6 +347,8 @@ public final class ChessBoard
         
         checkStarted();
         
+        transpositionTable.clear();
+        
         final var startGameAnimation = new Timeline(60.0, new KeyFrame(Duration.millis(START_ANIMATION_MILLISECONDS),
                 new KeyValue(PAUSED_EFFECT.getFXEffect().radiusProperty(), 0.0)));
         
@@ -313,6 +379,163 @@ public final class ChessBoard
         return chessTiles[x][y];
     }
     
+    ChessPosition getChessPosition() {
+        
+        return chessPosition;
+    }
+    
+    public ChessPosition copyChessPosition() {
+        
+        return new ChessPosition(chessPosition);
+    }
+    
+    public long getZobristKey() {
+        
+        return chessPosition.getZobristKey();
+    }
+    
+    public ChessTranspositionTable getTranspositionTable() {
+        
+        return transpositionTable;
+    }
+    
+    public boolean isSquareAttacked(final ChessTile chessTile, final ChessPlayer attackingChessPlayer) {
+        
+        return chessAttackMap.isSquareAttacked(chessTile.getSquare(), color(attackingChessPlayer));
+    }
+    
+    public boolean isInCheck(final ChessPlayer chessPlayer) {
+        
+        return chessAttackMap.isInCheck(color(chessPlayer));
+    }
+    
+    // Squares attacked by the player's pieces, as a bitboard indexed by ChessTile.getSquare()
+    public long getAttackedSquares(final ChessPlayer chessPlayer) {
+        
+        return chessAttackMap.getAttackedSquares(color(chessPlayer));
+    }
+    
+    private static int color(final ChessPlayer chessPlayer) {
+        
+        return chessPlayer.isPlayerOne() ? ChessPosition.WHITE : ChessPosition.BLACK;
+    }
+    
+    public BooleanProperty threatOverlayVisibleProperty() {
+        
+        return threatOverlayVisibleProperty;
+    }
+    
+    public boolean isThreatOverlayVisible() {
+        
+        return threatOverlayVisibleProperty.get();
+    }
+    
+    public void setThreatOverlayVisible(final boolean threatOverlayVisible) {
+        
+        threatOverlayVisibleProperty.set(threatOverlayVisible);
+        
+    }
+    
+    // Marks the squares the opponent of the current player attacks
+    private void updateThreatOverlay() {
+        
+        final long squares = isThreatOverlayVisible()
+                ? chessAttackMap.getAttackedSquares(color(getCurrentChessPlayer()) ^ 1)
+                : 0L;
+        
+        forEachTile(threatenedSquares & ~squares, chessTile -> chessTile.getNode().getStyleClass().remove(THREATENED_TILE_STYLE_CLASS));
+        
+        forEachTile(squares & ~threatenedSquares, chessTile -> chessTile.getNode().getStyleClass().add(THREATENED_TILE_STYLE_CLASS));
+        
+        threatenedSquares = squares;
+        
+    }
+    
+    public ChessTablebase getTablebase() {
+        
+        return tablebase;
+    }
+    
+    public void setTablebase(final ChessTablebase tablebase) {
+        
+        this.tablebase = tablebase;
+        
+    }
+    
+    // Marks the source and destination of the best move the endgame tables know for the current player.
+    // Returns false when there are no tables covering the position.
+    public boolean showHint() {
+        
+        if ((tablebase == null) || (getGameStatus() != ChessGameStatus.ONGOING)) {
+            
+            return false;
+            
+        }
+        
+        final int move = tablebase.findBestMove(chessPosition);
+        
+        if (move == ChessMove.NO_MOVE) {
+            
+            return false;
+            
+        }
+        
+        clearHint();
+        
+        hintSquares = (1L << ChessMove.getSourceSquare(move)) | (1L << ChessMove.getDestinationSquare(move));
+        
+        forEachTile(hintSquares, chessTile -> chessTile.getNode().getStyleClass().add(HINT_TILE_STYLE_CLASS));
+        
+        return true;
+    }
+    
+    private void clearHint() {
+        
+        forEachTile(hintSquares, chessTile -> chessTile.getNode().getStyleClass().remove(HINT_TILE_STYLE_CLASS));
+        
+        hintSquares = 0L;
+        
+    }
+    
+    public ReadOnlyObjectProperty<ChessGameStatus> gameStatusProperty() {
+        
+        return gameStatusProperty.getReadOnlyProperty();
+    }
+    
+    public ChessGameStatus getGameStatus() {
+        
+        return gameStatusProperty.get();
+    }
+    
+    // Checked after every move, for the player who has to move next
+    private void updateGameStatus() {
+        
+        final ChessGameStatus gameStatus = ChessGameStatus.of(chessPosition);
+        
+        if (gameStatus.isGameOver() && !getGameStatus().isGameOver()) {
+            
+            gameStatusProperty.set(gameStatus);
+            
+            final ChessPlayer currentChessPlayer = getCurrentChessPlayer();
+            
+            final ChessPlayer otherChessPlayer = (currentChessPlayer == getChessPlayerOne()) ? getChessPlayerTwo() : getChessPlayerOne();
+            
+            // Draws have neither winners nor losers
+            
+            if (gameStatus == ChessGameStatus.CHECKMATE) {
+                
+                runOnGameEnd(Set.of(otherChessPlayer), Set.of(currentChessPlayer));
+                
+            } else {
+                
+                runOnGameEnd(Set.of(), Set.of());
+                
+            }
+            
+        }
+        
+    }
+    
     public ReadOnlyObjectProperty<ChessTile> hoveringChessTileProperty() {
         
         return hoveringChessTileProperty.getReadOnlyProperty();
@@ -341,7 +564,10 @@ public final class ChessBoard
     
     void setSelectedChessTile(final ChessTile chessTile) {
         
-        if (!pieceAnimating) {
+        // Tiles can't be selected while a piece is moving, while an engine plays the current player
+        // or once the game is over
+        
+        if (!pieceAnimating && (replayTimeline == null) && (getCurrentChessPlayer().getChessEngine() == null) && !getGameStatus().isGameOver()) {
 
             final ChessTile newSelectedChessTile = handleSelection(selectedChessTileProperty.get(), chessTile);
 
@@ -351,6 +577,57 @@ public final class ChessBoard
         
     }
     
+    // Legal destination squares of the piece on the source square, as a bitboard
+    public long getLegalDestinations(final int sourceSquare) {
+        
+        if (!legalDestinationsValid) {
+            
+            Arrays.fill(legalDestinations, 0L);
+            
+            final int legalMoveCount = ChessMoveGenerator.generateLegalMoves(chessPosition, legalMoves, 0);
+            
+            for (int i = 0; i < legalMoveCount; i++) {
+                
+                legalDestinations[ChessMove.getSourceSquare(legalMoves[i])] |= 1L << ChessMove.getDestinationSquare(legalMoves[i]);
+                
+            }
+            
+            legalDestinationsValid = true;
+            
+        }
+        
+        return legalDestinations[sourceSquare];
+    }
+    
+    private void setSelectedDestinations(final long destinations) {
+        
+        forEachTile(selectedDestinations & ~destinations, chessTile -> chessTile.getEffectTypes().remove(reachableTileEffect));
+        
+        forEachTile(destinations & ~selectedDestinations, chessTile -> chessTile.getEffectTypes().add(0, reachableTileEffect));
+        
+        selectedDestinations = destinations;
+        
+        validMoveProperty.invalidate();
+        
+    }
+    
+    private ChessTile chessTile(final int square) {
+        
+        return chessTiles[ChessPosition.squareX(square)][ChessPosition.squareY(square)];
+    }
+    
+    private void forEachTile(final long squares, final Consumer<ChessTile> action) {
+        
+        for (long remaining = squares; remaining != 0L; remaining &= remaining - 1) {
+            
+            final int square = Long.numberOfTrailingZeros(remaining);
+            
+            action.accept(chessTile(square));
+            
+        }
+        
+    }
+    
     public ObjectBinding<ChessPlayer> currentChessPlayerProperty() {
         
         return currentChessPlayerProperty;
@@ -401,72 +678,751 @@ public final class ChessBoard
             
         } else if (validMoveProperty.get()) {
             
-            pieceAnimating = true;
+            playMove(oldSelectedChessTile, newSelectedChessTile,
+                    chessPosition.encodeMove(oldSelectedChessTile.getSquare(), newSelectedChessTile.getSquare()));
             
-            final Point2D from = oldSelectedChessTile.getNode().localToParent(0.0, 0.0);
+            return null;
             
-            pieceTransition.setFromX(from.getX());
-            pieceTransition.setFromY(from.getY());
+        }
+        
+        return oldSelectedChessTile;
+    }
+    
+    private void playMove(final ChessTile sourceChessTile, final ChessTile destinationChessTile, final int move) {
+        
+        pieceAnimating = true;
+        
+        redoCount = 0;
+        
+        final Point2D from = sourceChessTile.getNode().localToParent(0.0, 0.0);
+        
+        pieceTransition.setFromX(from.getX());
+        pieceTransition.setFromY(from.getY());
 
-            final Point2D to = newSelectedChessTile.getNode().localToParent(0.0, 0.0);
+        final Point2D to = destinationChessTile.getNode().localToParent(0.0, 0.0);
 
-            pieceTransition.setToX(to.getX());
-            pieceTransition.setToY(to.getY());
+        pieceTransition.setToX(to.getX());
+        pieceTransition.setToY(to.getY());
+        
+        final ChessPlayer currentChessPlayer = getCurrentChessPlayer();
+
+        final ChessPiece movingChessPiece = sourceChessTile.getChessPiece();
+        
+        final Node movingChessPieceNode = movingChessPiece.getNode();
+        
+        pieceTransition.setNode(movingChessPieceNode);
+
+        movingChessPieceNode.setViewOrder(-2);
+        
+        movingChessPieceNode.setManaged(false);
+        
+        getNode().getChildren().add(movingChessPieceNode);
+        
+        movingChessPiece.setChessTile(null);
+        
+        sourceChessTile.setChessPiece(null);
+        
+        pieceTransition.setOnFinished(actionEvent -> {
             
-            final ChessPlayer currentChessPlayer = getCurrentChessPlayer();
+            movingChessPieceNode.setViewOrder(-1);
 
-            final ChessPiece movingChessPiece = oldSelectedChessTile.getChessPiece();
+            movingChessPieceNode.setManaged(true);
+            
+            movingChessPieceNode.setTranslateX(0.0);
+            movingChessPieceNode.setTranslateY(0.0);
             
-            final Node movingChessPieceNode = movingChessPiece.getNode();
+            landMove(currentChessPlayer, movingChessPiece, destinationChessTile, move);
             
-            pieceTransition.setNode(movingChessPieceNode);
+            pieceAnimating = false;
 
-            movingChessPieceNode.setViewOrder(-2);
+            incrementTurnCount();
+            
+        });
+
+        pieceTransition.playFromStart();
+        
+    }
+    
+    // Puts the moving piece, already lifted off its source tile, on the destination and plays the move on the
+    // model
+    private void landMove(final ChessPlayer currentChessPlayer, final ChessPiece movingChessPiece, final ChessTile destinationChessTile,
+            final int move) {
+        
+        final ChessPiece capturedChessPiece = destinationChessTile.getChessPiece();
+        
+        if (capturedChessPiece != null) {
             
-            movingChessPieceNode.setManaged(false);
+            currentChessPlayer.getCapturedPieces().add(capturedChessPiece);
             
-            getNode().getChildren().add(movingChessPieceNode);
+            capturedChessPiece.setChessTile(null);
+            
+        }
+        
+        destinationChessTile.setChessPiece(movingChessPiece);
+        
+        movingChessPiece.setChessTile(destinationChessTile);
+        
+        movingChessPiece.incrementMoveCount();
+        
+        playSpecialMove(currentChessPlayer, destinationChessTile, move);
+        
+        chessPosition.makeMove(move);
+        
+        chessAttackMap.update(chessPosition);
+        
+    }
+    
+    // Tile side effects of castling, en passant and promotion, once the moving piece has landed
+    private void playSpecialMove(final ChessPlayer currentChessPlayer, final ChessTile destinationChessTile, final int move) {
+        
+        final int x = destinationChessTile.getX();
+        final int y = destinationChessTile.getY();
+        
+        switch (ChessMove.getFlags(move)) {
             
-            movingChessPiece.setChessTile(null);
+            case ChessMove.KING_CASTLE -> moveChessPiece(chessTiles[x + 1][y], chessTiles[x - 1][y]);
             
-            oldSelectedChessTile.setChessPiece(null);
+            case ChessMove.QUEEN_CASTLE -> moveChessPiece(chessTiles[x - 2][y], chessTiles[x + 1][y]);
             
-            pieceTransition.setOnFinished(actionEvent -> {
+            case ChessMove.EN_PASSANT -> {
                 
-                movingChessPieceNode.setViewOrder(-1);
-
-                movingChessPieceNode.setManaged(true);
+                final ChessTile capturedChessTile = chessTiles[x][y + (currentChessPlayer.isPlayerOne() ? 1 : -1)];
                 
-                movingChessPieceNode.setTranslateX(0.0);
-                movingChessPieceNode.setTranslateY(0.0);
+                final ChessPiece capturedChessPiece = capturedChessTile.getChessPiece();
                 
-                if (newTileChessPiece != null) {
-
-                    currentChessPlayer.getCapturedPieces().add(newTileChessPiece);
-
-                    newTileChessPiece.setChessTile(null);
-
-                }
-
-                newSelectedChessTile.setChessPiece(movingChessPiece);
-
-                movingChessPiece.setChessTile(newSelectedChessTile);
-
-                movingChessPiece.incrementMoveCount();
-
-                incrementTurnCount();
-
-                pieceAnimating = false;
+                currentChessPlayer.getCapturedPieces().add(capturedChessPiece);
                 
-            });
-
-            pieceTransition.playFromStart();
+                capturedChessPiece.setChessTile(null);
+                
+                capturedChessTile.setChessPiece(null);
+                
+            }
             
-            return null;
+            default -> {
+                
+                if (ChessMove.isPromotion(move)) {
+                    
+                    final ChessPiece pawnChessPiece = destinationChessTile.getChessPiece();
+                    
+                    final var promotedChessPiece = new ChessPiece(this, currentChessPlayer,
+                            ChessPiece.Type.fromPositionType(ChessMove.getPromotionType(move)));
+                    
+                    currentChessPlayer.getGamePieces().remove(pawnChessPiece);
+                    
+                    currentChessPlayer.getGamePieces().add(promotedChessPiece);
+                    
+                    pawnChessPiece.setChessTile(null);
+                    
+                    destinationChessTile.setChessPiece(promotedChessPiece);
+                    
+                    promotedChessPiece.setChessTile(destinationChessTile);
+                    
+                }
+                
+            }
+            
+        }
+        
+    }
+    
+    private static void moveChessPiece(final ChessTile sourceChessTile, final ChessTile destinationChessTile) {
+        
+        final ChessPiece chessPiece = sourceChessTile.getChessPiece();
+        
+        sourceChessTile.setChessPiece(null);
+        
+        destinationChessTile.setChessPiece(chessPiece);
+        
+        chessPiece.setChessTile(destinationChessTile);
+        
+        chessPiece.incrementMoveCount();
+        
+    }
+    
+    // Moves a piece back to where it came from, taking its move back as well
+    private static void unmoveChessPiece(final ChessTile sourceChessTile, final ChessTile destinationChessTile) {
+        
+        final ChessPiece chessPiece = sourceChessTile.getChessPiece();
+        
+        sourceChessTile.setChessPiece(null);
+        
+        destinationChessTile.setChessPiece(chessPiece);
+        
+        chessPiece.setChessTile(destinationChessTile);
+        
+        chessPiece.decrementMoveCount();
+        
+    }
+    
+    public boolean canUndo() {
+        
+        return (replayTimeline == null) && (chessPosition.getMoveCount() > 0);
+    }
+    
+    public boolean canRedo() {
+        
+        return (replayTimeline == null) && (redoCount > 0);
+    }
+    
+    // Takes the last move back at once. The model is restored from the position's undo stack and only the
+    // tiles the move touched are updated, so the cost does not depend on the length of the game. Returns
+    // false when there is no move to take back or a piece is moving.
+    public boolean undo() {
+        
+        if (pieceAnimating || !canUndo()) {
+            
+            return false;
+            
+        }
+        
+        cancelEngineMove(getCurrentChessPlayer().getChessEngine());
+        
+        selectedChessTileProperty.set(null);
+        
+        final int move = chessPosition.getLastMove();
+        
+        chessPosition.unmakeMove();
+        
+        final int color = chessPosition.getSideToMove();
+        
+        final ChessPlayer movingChessPlayer = (color == ChessPosition.WHITE) ? getChessPlayerOne() : getChessPlayerTwo();
+        
+        final int destinationSquare = ChessMove.getDestinationSquare(move);
+        
+        final ChessTile sourceChessTile = chessTile(ChessMove.getSourceSquare(move));
+        
+        final ChessTile destinationChessTile = chessTile(destinationSquare);
+        
+        if (ChessMove.isPromotion(move)) {
+            
+            // The promoted piece turns back into a pawn
+            
+            final ChessPiece promotedChessPiece = destinationChessTile.getChessPiece();
+            
+            movingChessPlayer.getGamePieces().remove(promotedChessPiece);
+            
+            promotedChessPiece.setChessTile(null);
+            
+            destinationChessTile.setChessPiece(null);
+            
+            final ChessPiece pawnChessPiece = newChessPiece(ChessPosition.piece(color, ChessPosition.PAWN));
+            
+            movingChessPlayer.getGamePieces().add(pawnChessPiece);
+            
+            sourceChessTile.setChessPiece(pawnChessPiece);
+            
+            pawnChessPiece.setChessTile(sourceChessTile);
+            
+        } else {
+            
+            unmoveChessPiece(destinationChessTile, sourceChessTile);
+            
+        }
+        
+        final int x = destinationChessTile.getX();
+        final int y = destinationChessTile.getY();
+        
+        switch (ChessMove.getFlags(move)) {
+            
+            case ChessMove.KING_CASTLE -> unmoveChessPiece(chessTiles[x - 1][y], chessTiles[x + 1][y]);
+            
+            case ChessMove.QUEEN_CASTLE -> unmoveChessPiece(chessTiles[x + 1][y], chessTiles[x - 2][y]);
+            
+            default -> {
+                
+                if (ChessMove.isCapture(move)) {
+                    
+                    // The captured piece is the last one its captor took
+                    
+                    final ObservableList<ChessPiece> capturedPieces = movingChessPlayer.getCapturedPieces();
+                    
+                    final ChessPiece capturedChessPiece = capturedPieces.remove(capturedPieces.size() - 1);
+                    
+                    final ChessTile capturedChessTile = (ChessMove.getFlags(move) == ChessMove.EN_PASSANT)
+                            ? chessTiles[x][y + ((color == ChessPosition.WHITE) ? 1 : -1)]
+                            : destinationChessTile;
+                    
+                    capturedChessTile.setChessPiece(capturedChessPiece);
+                    
+                    capturedChessPiece.setChessTile(capturedChessTile);
+                    
+                    if (!capturedChessPiece.getGamePlayer().getGamePieces().contains(capturedChessPiece)) {
+                        
+                        capturedChessPiece.getGamePlayer().getGamePieces().add(capturedChessPiece);
+                        
+                    }
+                    
+                }
+                
+            }
+            
+        }
+        
+        chessAttackMap.update(chessPosition);
+        
+        if (redoCount == redoMoves.length) {
+            
+            redoMoves = Arrays.copyOf(redoMoves, redoCount * 2);
+            
+        }
+        
+        redoMoves[redoCount++] = move;
+        
+        gameStatusProperty.set(ChessGameStatus.ONGOING);
+        
+        turnCountProperty.set(getTurnCount() - 1);
+        
+        return true;
+    }
+    
+    // Plays the last move taken back again, without the transition. Returns false when there is none or a
+    // piece is moving.
+    public boolean redo() {
+        
+        if (pieceAnimating || !canRedo()) {
+            
+            return false;
+            
+        }
+        
+        cancelEngineMove(getCurrentChessPlayer().getChessEngine());
+        
+        selectedChessTileProperty.set(null);
+        
+        final int move = redoMoves[--redoCount];
+        
+        final ChessTile sourceChessTile = chessTile(ChessMove.getSourceSquare(move));
+        
+        final ChessPiece movingChessPiece = sourceChessTile.getChessPiece();
+        
+        sourceChessTile.setChessPiece(null);
+        
+        movingChessPiece.setChessTile(null);
+        
+        landMove(getCurrentChessPlayer(), movingChessPiece, chessTile(ChessMove.getDestinationSquare(move)), move);
+        
+        redoing = true;
+        
+        try {
+            
+            incrementTurnCount();
+            
+        } finally {
+            
+            redoing = false;
+            
+        }
+        
+        return true;
+    }
+    
+    // Takes back the last move and, while the game runs, the engine's reply before it, so that a person is
+    // to move again. Returns the number of moves taken back.
+    public int takeBack() {
+        
+        int moves = 0;
+        
+        while ((moves < 2) && undo()) {
+            
+            moves++;
+            
+            if (isPaused() || (getCurrentChessPlayer().getChessEngine() == null)) {
+                
+                break;
+                
+            }
+            
+        }
+        
+        return moves;
+    }
+    
+    // Puts the board in the given position at once, without the per-move transition. The move history comes
+    // along, and the pieces it captured go back to the players' captured pieces. Ends any replay.
+    public void setChessPosition(final ChessPosition newChessPosition) {
+        
+        replayTimeline = null;
+        
+        showChessPosition(newChessPosition);
+        
+    }
+    
+    private void showChessPosition(final ChessPosition newChessPosition) {
+        
+        if (pieceAnimating) {
+            
+            throw new IllegalStateException("cannot change the position while a piece is moving");
+            
+        }
+        
+        cancelEngineMove(getCurrentChessPlayer().getChessEngine());
+        
+        selectedChessTileProperty.set(null);
+        
+        chessPosition.copyFrom(newChessPosition);
+        
+        redoCount = 0;
+        
+        chessAttackMap.reset(chessPosition);
+        
+        for (final ChessPlayer chessPlayer : gamePlayers) {
+            
+            for (final ChessPiece chessPiece : chessPlayer.getGamePieces()) {
+                
+                final ChessTile chessTile = chessPiece.getChessTile();
+                
+                if (chessTile != null) {
+                    
+                    chessTile.setChessPiece(null);
+                    
+                    chessPiece.setChessTile(null);
+                    
+                }
+                
+            }
+            
+            chessPlayer.getGamePieces().clear();
+            
+            chessPlayer.getCapturedPieces().clear();
+            
+        }
+        
+        for (int square = 0; square < ChessPosition.SQUARE_COUNT; square++) {
+            
+            final int piece = chessPosition.getPiece(square);
+            
+            if (piece != ChessPosition.NO_PIECE) {
+                
+                final ChessPiece chessPiece = newChessPiece(piece);
+                
+                final ChessTile chessTile = chessTile(square);
+                
+                chessTile.setChessPiece(chessPiece);
+                
+                chessPiece.setChessTile(chessTile);
+                
+                chessPiece.getGamePlayer().getGamePieces().add(chessPiece);
+                
+            }
+            
+        }
+        
+        // Captured pieces go to the opponent of their owner, in the order they were taken, found by
+        // walking the history back on a copy
+        
+        final var historyPosition = new ChessPosition(chessPosition);
+        
+        final var capturedPieces = new int[historyPosition.getMoveCount()];
+        
+        int capturedPieceCount = 0;
+        
+        while (historyPosition.getMoveCount() > 0) {
+            
+            final int move = historyPosition.getLastMove();
+            
+            historyPosition.unmakeMove();
+            
+            if (ChessMove.getFlags(move) == ChessMove.EN_PASSANT) {
+                
+                capturedPieces[capturedPieceCount++] = ChessPosition.piece(historyPosition.getSideToMove() ^ 1, ChessPosition.PAWN);
+                
+            } else if (ChessMove.isCapture(move)) {
+                
+                capturedPieces[capturedPieceCount++] = historyPosition.getPiece(ChessMove.getDestinationSquare(move));
+                
+            }
+            
+        }
+        
+        for (int i = capturedPieceCount - 1; i >= 0; i--) {
+            
+            final ChessPiece chessPiece = newChessPiece(capturedPieces[i]);
+            
+            (chessPiece.getGamePlayer().isPlayerOne() ? getChessPlayerTwo() : getChessPlayerOne()).getCapturedPieces().add(chessPiece);
+            
+        }
+        
+        gameStatusProperty.set(ChessGameStatus.ONGOING);
+        
+        updateTurnCount();
+        
+    }
+    
+    // Turn parity follows the side to move, so positions with black to move line up with the players
+    private void updateTurnCount() {
+        
+        final int turnCount = ((chessPosition.getFullmoveNumber() - 1) * 2) + chessPosition.getSideToMove();
+        
+        if (getTurnCount() == turnCount) {
+            
+            updateTurn();
+            
+        } else {
+            
+            turnCountProperty.set(turnCount);
+            
+        }
+        
+    }
+    
+    // Shows the position after the given ply of the timeline, built from the nearest keyframe. Only the
+    // tiles whose occupant differs are touched, reusing lifted pieces where the same kind lands elsewhere,
+    // and captured pieces are added or taken off for the plies in between. The first seek on a timeline
+    // starts replaying it and redraws the whole board. Returns false when a piece is moving.
+    public boolean seek(final ChessReplayTimeline timeline, final int ply) {
+        
+        if (pieceAnimating) {
+            
+            return false;
+            
+        }
+        
+        if (timeline != replayTimeline) {
+            
+            replayTimeline = timeline;
+            
+            showChessPosition(timeline.seek(ply));
+            
+            return true;
+            
+        }
+        
+        cancelEngineMove(getCurrentChessPlayer().getChessEngine());
+        
+        selectedChessTileProperty.set(null);
+        
+        final int shownPly = chessPosition.getMoveCount();
+        
+        timeline.seek(ply, seekPosition);
+        
+        long changedSquares = 0L;
+        
+        for (int piece = 0; piece < ChessPosition.PIECE_COUNT; piece++) {
+            
+            changedSquares |= chessPosition.getPieceBitboard(piece) ^ seekPosition.getPieceBitboard(piece);
+            
+        }
+        
+        // Lift every piece off the changed tiles first, so that the ones that only moved can be put down again
+        
+        final var liftedChessPieces = new ArrayList<ChessPiece>(Long.bitCount(changedSquares));
+        
+        forEachTile(changedSquares, chessTile -> {
+            
+            final ChessPiece chessPiece = chessTile.getChessPiece();
+            
+            if (chessPiece != null) {
+                
+                chessTile.setChessPiece(null);
+                
+                chessPiece.setChessTile(null);
+                
+                liftedChessPieces.add(chessPiece);
+                
+            }
+            
+        });
+        
+        for (long remaining = changedSquares & seekPosition.getOccupancy(); remaining != 0L; remaining &= remaining - 1) {
+            
+            final int square = Long.numberOfTrailingZeros(remaining);
+            
+            final int piece = seekPosition.getPiece(square);
+            
+            ChessPiece chessPiece = takeLiftedChessPiece(liftedChessPieces, piece);
+            
+            if (chessPiece == null) {
+                
+                chessPiece = newChessPiece(piece);
+                
+                chessPiece.getGamePlayer().getGamePieces().add(chessPiece);
+                
+            }
+            
+            final ChessTile chessTile = chessTile(square);
+            
+            chessTile.setChessPiece(chessPiece);
+            
+            chessPiece.setChessTile(chessTile);
+            
+        }
+        
+        for (final ChessPiece chessPiece : liftedChessPieces) {
+            
+            chessPiece.getGamePlayer().getGamePieces().remove(chessPiece);
+            
+        }
+        
+        // Captured pieces go to the opponent of their owner, so forward they are appended and backward the
+        // last one is taken off
+        
+        for (int i = shownPly; i < ply; i++) {
+            
+            final int capturedPiece = timeline.getCapturedPiece(i);
+            
+            if (capturedPiece != ChessPosition.NO_PIECE) {
+                
+                capturingChessPlayer(capturedPiece).getCapturedPieces().add(newChessPiece(capturedPiece));
+                
+            }
+            
+        }
+        
+        for (int i = shownPly - 1; i >= ply; i--) {
+            
+            final int capturedPiece = timeline.getCapturedPiece(i);
+            
+            if (capturedPiece != ChessPosition.NO_PIECE) {
+                
+                final ObservableList<ChessPiece> capturedPieces = capturingChessPlayer(capturedPiece).getCapturedPieces();
+                
+                capturedPieces.remove(capturedPieces.size() - 1);
+                
+            }
+            
+        }
+        
+        chessPosition.copyFrom(seekPosition);
+        
+        redoCount = 0;
+        
+        chessAttackMap.update(chessPosition);
+        
+        updateTurnCount();
+        
+        return true;
+    }
+    
+    public boolean isReplaying() {
+        
+        return replayTimeline != null;
+    }
+    
+    // Leaves the replay. The game goes on from the shown position, or stays over when that position ends it;
+    // the game-end callbacks are not run for a replayed ending.
+    public void endReplay() {
+        
+        if (replayTimeline == null) {
+            
+            return;
+            
+        }
+        
+        replayTimeline = null;
+        
+        requestEngineMove();
+        
+    }
+    
+    // Removes and returns a lifted piece of the given kind, or null when there is none
+    private static ChessPiece takeLiftedChessPiece(final List<ChessPiece> liftedChessPieces, final int piece) {
+        
+        for (int i = 0; i < liftedChessPieces.size(); i++) {
+            
+            final ChessPiece chessPiece = liftedChessPieces.get(i);
+            
+            if ((chessPiece.getType().getPositionType() == ChessPosition.pieceType(piece))
+                    && (chessPiece.getGamePlayer().isPlayerOne() == (ChessPosition.pieceColor(piece) == ChessPosition.WHITE))) {
+                
+                return liftedChessPieces.remove(i);
+                
+            }
+            
+        }
+        
+        return null;
+    }
+    
+    private ChessPlayer capturingChessPlayer(final int capturedPiece) {
+        
+        return (ChessPosition.pieceColor(capturedPiece) == ChessPosition.WHITE) ? getChessPlayerTwo() : getChessPlayerOne();
+    }
+    
+    public void setFen(final CharSequence fen) {
+        
+        setChessPosition(ChessFen.parse(fen));
+        
+    }
+    
+    public String toFen() {
+        
+        return ChessFen.toFen(chessPosition);
+    }
+    
+    // Plays the first plies of the record straight into the board. The record is replayed headless into a
+    // scratch position first, so a corrupt record leaves the board untouched.
+    public void replay(final ChessGameRecord chessGameRecord, final int plies) {
+        
+        final var replayedPosition = new ChessPosition();
+        
+        chessGameRecord.replay(replayedPosition, plies);
+        
+        setChessPosition(replayedPosition);
+        
+    }
+    
+    public void replay(final ChessGameRecord chessGameRecord) {
+        
+        replay(chessGameRecord, chessGameRecord.getPlyCount());
+        
+    }
+    
+    public ChessGameRecord toGameRecord() {
+        
+        return ChessGameRecord.of(chessPosition);
+    }
+    
+    private ChessPiece newChessPiece(final int piece) {
+        
+        return new ChessPiece(this, (ChessPosition.pieceColor(piece) == ChessPosition.WHITE) ? getChessPlayerOne() : getChessPlayerTwo(),
+                ChessPiece.Type.fromPositionType(ChessPosition.pieceType(piece)));
+    }
+    
+    private void requestEngineMove() {
+        
+        final ChessEngine chessEngine = getCurrentChessPlayer().getChessEngine();
+        
+        if ((chessEngine == null) || !isGameStarted() || isPaused() || pieceAnimating || (replayTimeline != null) || getGameStatus().isGameOver()) {
+            
+            return;
+            
+        }
+        
+        final int engineRequest = ++engineRequestCount;
+        
+        chessEngine.findMove(chessPosition).thenAccept(move -> Platform.runLater(() -> {
+            
+            // Drop answers to requests that were cancelled or overtaken in the meantime
+            
+            if ((engineRequest == engineRequestCount)
+                    && (move != ChessMove.NO_MOVE)
+                    && !isPaused()
+                    && !pieceAnimating
+                    && (getCurrentChessPlayer().getChessEngine() == chessEngine)) {
+                
+                selectedChessTileProperty.set(null);
+                
+                final int sourceSquare = ChessMove.getSourceSquare(move);
+                final int destinationSquare = ChessMove.getDestinationSquare(move);
+                
+                playMove(chessTile(sourceSquare), chessTile(destinationSquare), move);
+                
+            }
+            
+        }));
+        
+    }
+    
+    private void cancelEngineMove(final ChessEngine chessEngine) {
+        
+        engineRequestCount++;
+        
+        if (chessEngine != null) {
+            
+            chessEngine.cancel();
             
         }
         
-        return oldSelectedChessTile;
     }
     
 }
\ No newline at end of file
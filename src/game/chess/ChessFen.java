@@ -0,0 +1,365 @@
+package game.chess;
+
+public final class ChessFen {
+    
+    public static final String START_POSITION = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+    
+    private static final String PIECE_CHARACTERS = "PNBRQKpnbrqk";
+    
+    // Ranks 8 and 1, where no pawn can stand
+    private static final long BACK_RANKS = 0xFF000000000000FFL;
+    
+    // King and rook squares behind each castling right, in the bit order of the rights
+    private static final int[][] CASTLING_HOME_SQUARES = {
+            {ChessPosition.square(4, 7), ChessPosition.square(7, 7)},
+            {ChessPosition.square(4, 7), ChessPosition.square(0, 7)},
+            {ChessPosition.square(4, 0), ChessPosition.square(7, 0)},
+            {ChessPosition.square(4, 0), ChessPosition.square(0, 0)}
+    };
+    
+    private ChessFen() {
+        
+        super();
+        
+    }
+    
+    public static ChessPosition parse(final CharSequence fen) {
+        
+        final var chessPosition = new ChessPosition();
+        
+        parse(fen, chessPosition);
+        
+        return chessPosition;
+    }
+    
+    // Reads the FEN into an existing position, walking the characters once.
+    public static void parse(final CharSequence fen, final ChessPosition chessPosition) {
+        
+        chessPosition.clear();
+        
+        final int length = fen.length();
+        
+        int index = 0;
+        
+        // Piece placement, from the top row (rank 8) down
+        
+        int x = 0;
+        int y = 0;
+        
+        for (; (index < length) && (fen.charAt(index) != ' '); index++) {
+            
+            final char c = fen.charAt(index);
+            
+            if (c == '/') {
+                
+                if (x != 8) {
+                    
+                    throw new IllegalArgumentException("invalid piece placement in FEN: " + fen);
+                    
+                }
+                
+                x = 0;
+                
+                y++;
+                
+            } else if ((c >= '1') && (c <= '8')) {
+                
+                x += c - '0';
+                
+            } else {
+                
+                final int piece = PIECE_CHARACTERS.indexOf(c);
+                
+                if ((piece < 0) || (x > 7) || (y > 7)) {
+                    
+                    throw new IllegalArgumentException("invalid piece placement in FEN: " + fen);
+                    
+                }
+                
+                chessPosition.setPiece(ChessPosition.square(x, y), piece);
+                
+                x++;
+                
+            }
+            
+        }
+        
+        if ((x != 8) || (y != 7)) {
+            
+            throw new IllegalArgumentException("invalid piece placement in FEN: " + fen);
+            
+        }
+        
+        if ((Long.bitCount(chessPosition.getPieceBitboard(ChessPosition.piece(ChessPosition.WHITE, ChessPosition.KING))) != 1)
+                || (Long.bitCount(chessPosition.getPieceBitboard(ChessPosition.piece(ChessPosition.BLACK, ChessPosition.KING))) != 1)) {
+            
+            throw new IllegalArgumentException("FEN must place exactly one king per side: " + fen);
+            
+        }
+        
+        if (((chessPosition.getPieceBitboard(ChessPosition.piece(ChessPosition.WHITE, ChessPosition.PAWN))
+                | chessPosition.getPieceBitboard(ChessPosition.piece(ChessPosition.BLACK, ChessPosition.PAWN))) & BACK_RANKS) != 0L) {
+            
+            throw new IllegalArgumentException("FEN places a pawn on rank 1 or 8: " + fen);
+            
+        }
+        
+        // Side to move
+        
+        index = skipSpaces(fen, index);
+        
+        if (index < length) {
+            
+            final char side = fen.charAt(index);
+            
+            if ((side != 'w') && (side != 'b')) {
+                
+                throw new IllegalArgumentException("invalid side to move in FEN: " + fen);
+                
+            }
+            
+            chessPosition.setSideToMove((side == 'b') ? ChessPosition.BLACK : ChessPosition.WHITE);
+            
+            index++;
+            
+        }
+        
+        // Castling rights
+        
+        index = skipSpaces(fen, index);
+        
+        int castlingRights = 0;
+        
+        for (; (index < length) && (fen.charAt(index) != ' '); index++) {
+            
+            switch (fen.charAt(index)) {
+                
+                case 'K' -> castlingRights |= ChessPosition.WHITE_KING_SIDE;
+                
+                case 'Q' -> castlingRights |= ChessPosition.WHITE_QUEEN_SIDE;
+                
+                case 'k' -> castlingRights |= ChessPosition.BLACK_KING_SIDE;
+                
+                case 'q' -> castlingRights |= ChessPosition.BLACK_QUEEN_SIDE;
+                
+                case '-' -> {}
+                
+                default -> throw new IllegalArgumentException("invalid castling rights in FEN: " + fen);
+                
+            }
+            
+        }
+        
+        // A right only counts while its king and rook are still on their home squares
+        
+        for (int right = 0; right < CASTLING_HOME_SQUARES.length; right++) {
+            
+            final int color = (right < 2) ? ChessPosition.WHITE : ChessPosition.BLACK;
+            
+            if ((chessPosition.getPiece(CASTLING_HOME_SQUARES[right][0]) != ChessPosition.piece(color, ChessPosition.KING))
+                    || (chessPosition.getPiece(CASTLING_HOME_SQUARES[right][1]) != ChessPosition.piece(color, ChessPosition.ROOK))) {
+                
+                castlingRights &= ~(1 << right);
+                
+            }
+            
+        }
+        
+        chessPosition.setCastlingRights(castlingRights);
+        
+        // En passant square, kept only when a pawn can actually capture there
+        
+        index = skipSpaces(fen, index);
+        
+        if ((index < length) && (fen.charAt(index) != '-')) {
+            
+            final int file = fen.charAt(index) - 'a';
+            
+            final char rank = ((index + 1) < length) ? fen.charAt(index + 1) : ' ';
+            
+            if ((file < 0) || (file > 7) || (rank != ((chessPosition.getSideToMove() == ChessPosition.WHITE) ? '6' : '3'))) {
+                
+                throw new IllegalArgumentException("invalid en passant square in FEN: " + fen);
+                
+            }
+            
+            final int square = ChessPosition.square(file, '8' - rank);
+            
+            final int us = chessPosition.getSideToMove();
+            
+            if ((ChessAttacks.pawnAttacks(us ^ 1, square)
+                    & chessPosition.getPieceBitboard(ChessPosition.piece(us, ChessPosition.PAWN))) != 0L) {
+                
+                chessPosition.setEnPassantSquare(square);
+                
+            }
+            
+            index += 2;
+            
+        } else {
+            
+            index++;
+            
+        }
+        
+        // Move clocks (optional)
+        
+        index = skipSpaces(fen, index);
+        
+        int halfmoveClock = 0;
+        
+        for (; (index < length) && (fen.charAt(index) != ' '); index++) {
+            
+            halfmoveClock = (halfmoveClock * 10) + digit(fen, index);
+            
+        }
+        
+        index = skipSpaces(fen, index);
+        
+        int fullmoveNumber = 0;
+        
+        for (; (index < length) && (fen.charAt(index) != ' '); index++) {
+            
+            fullmoveNumber = (fullmoveNumber * 10) + digit(fen, index);
+            
+        }
+        
+        chessPosition.setHalfmoveClock(halfmoveClock);
+        
+        chessPosition.setFullmoveNumber(Math.max(fullmoveNumber, 1));
+        
+    }
+    
+    // Writes the position as FEN. The en passant square is only given when a pawn can capture there.
+    public static String toFen(final ChessPosition chessPosition) {
+        
+        final var fen = new StringBuilder(90);
+        
+        appendFen(chessPosition, fen);
+        
+        return fen.toString();
+    }
+    
+    public static void appendFen(final ChessPosition chessPosition, final StringBuilder fen) {
+        
+        for (int y = 0; y < 8; y++) {
+            
+            if (y > 0) {
+                
+                fen.append('/');
+                
+            }
+            
+            int emptySquares = 0;
+            
+            for (int x = 0; x < 8; x++) {
+                
+                final int piece = chessPosition.getPiece(ChessPosition.square(x, y));
+                
+                if (piece == ChessPosition.NO_PIECE) {
+                    
+                    emptySquares++;
+                    
+                    continue;
+                    
+                }
+                
+                if (emptySquares > 0) {
+                    
+                    fen.append((char) ('0' + emptySquares));
+                    
+                    emptySquares = 0;
+                    
+                }
+                
+                fen.append(PIECE_CHARACTERS.charAt(piece));
+                
+            }
+            
+            if (emptySquares > 0) {
+                
+                fen.append((char) ('0' + emptySquares));
+                
+            }
+            
+        }
+        
+        fen.append((chessPosition.getSideToMove() == ChessPosition.WHITE) ? " w " : " b ");
+        
+        final int castlingRights = chessPosition.getCastlingRights();
+        
+        if (castlingRights == 0) {
+            
+            fen.append('-');
+            
+        } else {
+            
+            if ((castlingRights & ChessPosition.WHITE_KING_SIDE) != 0) {
+                
+                fen.append('K');
+                
+            }
+            
+            if ((castlingRights & ChessPosition.WHITE_QUEEN_SIDE) != 0) {
+                
+                fen.append('Q');
+                
+            }
+            
+            if ((castlingRights & ChessPosition.BLACK_KING_SIDE) != 0) {
+                
+                fen.append('k');
+                
+            }
+            
+            if ((castlingRights & ChessPosition.BLACK_QUEEN_SIDE) != 0) {
+                
+                fen.append('q');
+                
+            }
+            
+        }
+        
+        fen.append(' ');
+        
+        final int enPassantSquare = chessPosition.getEnPassantSquare();
+        
+        if (enPassantSquare == ChessPosition.NO_SQUARE) {
+            
+            fen.append('-');
+            
+        } else {
+            
+            fen.append((char) ('a' + ChessPosition.squareX(enPassantSquare))).append((char) ('8' - ChessPosition.squareY(enPassantSquare)));
+            
+        }
+        
+        fen.append(' ').append(chessPosition.getHalfmoveClock()).append(' ').append(chessPosition.getFullmoveNumber());
+        
+    }
+    
+    private static int digit(final CharSequence fen, final int index) {
+        
+        final char c = fen.charAt(index);
+        
+        if ((c < '0') || (c > '9')) {
+            
+            throw new IllegalArgumentException("invalid move counter in FEN: " + fen);
+            
+        }
+        
+        return c - '0';
+    }
+    
+    private static int skipSpaces(final CharSequence fen, int index) {
+        
+        while ((index < fen.length()) && (fen.charAt(index) == ' ')) {
+            
+            index++;
+            
+        }
+        
+        return index;
+    }
+    
+}
\ No newline at end of file
@@ -0,0 +1,546 @@
+package game.chess;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class ChessGameRecord {
+    
+    // Binary layout, big-endian, records can follow each other in one file:
+    //
+    //   magic "CHGR" (4), version (1), flags (1), result (1), reserved (1),
+    //   checkpoint interval in plies, 0 for none (2), reserved (2), ply count (4)
+    //   start position, only when FLAG_START_POSITION is set (40): 64 nibbles of piece + 1, side to move,
+    //     castling rights, en passant square + 1, reserved, halfmove clock (2), fullmove number (2)
+    //   one ChessMove word per ply (2 each), padded with zeros to a multiple of 8 bytes
+    //   Zobrist key after every checkpoint interval plies (8 each)
+    
+    public enum Result {
+        
+        UNKNOWN("*"),
+        WHITE_WINS("1-0"),
+        BLACK_WINS("0-1"),
+        DRAW("1/2-1/2");
+        
+        private final String displayName;
+        
+        Result(final String displayName) {
+            
+            this.displayName = displayName;
+            
+        }
+        
+        public final String getDisplayName() {
+            
+            return displayName;
+        }
+        
+        // Result of a game that has reached this position, UNKNOWN while it is still going
+        public static Result of(final ChessPosition chessPosition) {
+            
+            final ChessGameStatus gameStatus = ChessGameStatus.of(chessPosition);
+            
+            if (gameStatus == ChessGameStatus.CHECKMATE) {
+                
+                return (chessPosition.getSideToMove() == ChessPosition.WHITE) ? BLACK_WINS : WHITE_WINS;
+                
+            }
+            
+            return gameStatus.isDraw() ? DRAW : UNKNOWN;
+        }
+        
+        @Override
+        public String toString() {
+            
+            return displayName;
+        }
+        
+    }
+    
+    public static final int NO_CHECKPOINTS = 0;
+    
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 16;
+    
+    public static final int MAX_CHECKPOINT_INTERVAL = 0xFFFF;
+    
+    private static final int MAGIC = 0x43484752;
+    
+    private static final int VERSION = 1;
+    
+    private static final int FLAG_START_POSITION = 1;
+    
+    private static final int HEADER_BYTES = 16;
+    
+    private static final int MAX_PLY_COUNT = 1 << 24;
+    
+    private static final int START_POSITION_BYTES = 40;
+    
+    private static final ChessPosition STANDARD_START_POSITION = ChessPosition.startPosition();
+    
+    // Without history; null for the standard start position
+    private final ChessPosition startPosition;
+    
+    private final short[] moves;
+    
+    private final int checkpointInterval;
+    
+    // Key after (i + 1) * checkpointInterval plies
+    private final long[] checkpoints;
+    
+    private final Result result;
+    
+    private ChessGameRecord(final ChessPosition startPosition, final short[] moves, final int checkpointInterval,
+            final long[] checkpoints, final Result result) {
+        
+        this.startPosition = startPosition;
+        
+        this.moves = moves;
+        
+        this.checkpointInterval = checkpointInterval;
+        
+        this.checkpoints = checkpoints;
+        
+        this.result = result;
+        
+    }
+    
+    // Records the moves in the position's history, from the position where that history starts.
+    public static ChessGameRecord of(final ChessPosition chessPosition, final int checkpointInterval, final Result result) {
+        
+        if ((checkpointInterval < 0) || (checkpointInterval > MAX_CHECKPOINT_INTERVAL)) {
+            
+            throw new IllegalArgumentException("checkpoint interval must be between 0 and " + MAX_CHECKPOINT_INTERVAL);
+            
+        }
+        
+        final var start = new ChessPosition(chessPosition);
+        
+        final var moves = new short[start.getMoveCount()];
+        
+        for (int ply = moves.length - 1; ply >= 0; ply--) {
+            
+            moves[ply] = (short) start.getLastMove();
+            
+            start.unmakeMove();
+            
+        }
+        
+        final var checkpoints = new long[(checkpointInterval == NO_CHECKPOINTS) ? 0 : (moves.length / checkpointInterval)];
+        
+        final var position = new ChessPosition(start);
+        
+        for (int ply = 1; ply <= moves.length; ply++) {
+            
+            position.makeMove(moves[ply - 1] & 0xFFFF);
+            
+            if ((checkpointInterval != NO_CHECKPOINTS) && ((ply % checkpointInterval) == 0)) {
+                
+                checkpoints[(ply / checkpointInterval) - 1] = position.getZobristKey();
+                
+            }
+            
+        }
+        
+        return new ChessGameRecord(isStandardStart(start) ? null : start, moves, checkpointInterval, checkpoints, result);
+    }
+    
+    public static ChessGameRecord of(final ChessPosition chessPosition) {
+        
+        return of(chessPosition, DEFAULT_CHECKPOINT_INTERVAL, Result.of(chessPosition));
+    }
+    
+    public int getPlyCount() {
+        
+        return moves.length;
+    }
+    
+    public int getMove(final int ply) {
+        
+        return moves[ply] & 0xFFFF;
+    }
+    
+    public int getCheckpointInterval() {
+        
+        return checkpointInterval;
+    }
+    
+    public Result getResult() {
+        
+        return result;
+    }
+    
+    public boolean hasStandardStart() {
+        
+        return startPosition == null;
+    }
+    
+    // Resets the position to the start of the game, without any move history.
+    public void setUpStartPosition(final ChessPosition chessPosition) {
+        
+        chessPosition.copyFrom((startPosition == null) ? STANDARD_START_POSITION : startPosition);
+        
+    }
+    
+    // Checks the position reached after the given number of plies against the checkpoint for it, if any.
+    private void verifyCheckpoint(final int ply, final ChessPosition chessPosition) {
+        
+        if ((checkpointInterval != NO_CHECKPOINTS) && (ply > 0) && ((ply % checkpointInterval) == 0)
+                && (checkpoints[(ply / checkpointInterval) - 1] != chessPosition.getZobristKey())) {
+            
+            throw new IllegalArgumentException("game record does not match its checkpoint after ply " + ply);
+            
+        }
+        
+    }
+    
+    // Checks that the move at the ply moves a piece of the side to move, before it is made.
+    private void verifyMove(final int ply, final ChessPosition chessPosition) {
+        
+        final int piece = chessPosition.getPiece(ChessMove.getSourceSquare(getMove(ply)));
+        
+        if ((piece == ChessPosition.NO_PIECE) || (ChessPosition.pieceColor(piece) != chessPosition.getSideToMove())) {
+            
+            throw new IllegalArgumentException("game record move " + ChessMove.toString(getMove(ply)) + " at ply " + ply
+                    + " does not move a piece of the side to move");
+            
+        }
+        
+    }
+    
+    // Plays the first plies of the game into the position, with its history, checking every checkpoint on
+    // the way. Moves are trusted beyond moving a piece of the right side; the checkpoints catch corruption.
+    public void replay(final ChessPosition chessPosition, final int plies) {
+        
+        if ((plies < 0) || (plies > moves.length)) {
+            
+            throw new IllegalArgumentException("ply count must be between 0 and " + moves.length);
+            
+        }
+        
+        setUpStartPosition(chessPosition);
+        
+        for (int ply = 0; ply < plies; ply++) {
+            
+            verifyMove(ply, chessPosition);
+            
+            chessPosition.makeMove(getMove(ply));
+            
+            verifyCheckpoint(ply + 1, chessPosition);
+            
+        }
+        
+    }
+    
+    public void replay(final ChessPosition chessPosition) {
+        
+        replay(chessPosition, moves.length);
+        
+    }
+    
+    public ChessPosition replay() {
+        
+        final var chessPosition = new ChessPosition();
+        
+        replay(chessPosition);
+        
+        return chessPosition;
+    }
+    
+    public int getEncodedSize() {
+        
+        return HEADER_BYTES + ((startPosition == null) ? 0 : START_POSITION_BYTES) + movesSize(moves.length)
+                + (checkpoints.length * Long.BYTES);
+    }
+    
+    public void write(final ByteBuffer buffer) {
+        
+        buffer.putInt(MAGIC);
+        
+        buffer.put((byte) VERSION);
+        buffer.put((byte) ((startPosition == null) ? 0 : FLAG_START_POSITION));
+        buffer.put((byte) result.ordinal());
+        buffer.put((byte) 0);
+        
+        buffer.putShort((short) checkpointInterval);
+        buffer.putShort((short) 0);
+        
+        buffer.putInt(moves.length);
+        
+        if (startPosition != null) {
+            
+            for (int square = 0; square < ChessPosition.SQUARE_COUNT; square += 2) {
+                
+                buffer.put((byte) ((startPosition.getPiece(square) + 1) | ((startPosition.getPiece(square + 1) + 1) << 4)));
+                
+            }
+            
+            buffer.put((byte) startPosition.getSideToMove());
+            buffer.put((byte) startPosition.getCastlingRights());
+            buffer.put((byte) (startPosition.getEnPassantSquare() + 1));
+            buffer.put((byte) 0);
+            
+            buffer.putShort((short) startPosition.getHalfmoveClock());
+            buffer.putShort((short) startPosition.getFullmoveNumber());
+            
+        }
+        
+        final int movesStart = buffer.position();
+        
+        buffer.asShortBuffer().put(moves);
+        
+        buffer.position(movesStart + (moves.length * Short.BYTES));
+        
+        for (int i = movesSize(moves.length) - (moves.length * Short.BYTES); i > 0; i--) {
+            
+            buffer.put((byte) 0);
+            
+        }
+        
+        for (final long checkpoint : checkpoints) {
+            
+            buffer.putLong(checkpoint);
+            
+        }
+        
+    }
+    
+    public void write(final WritableByteChannel channel) throws IOException {
+        
+        final ByteBuffer buffer = ByteBuffer.allocate(getEncodedSize());
+        
+        write(buffer);
+        
+        buffer.flip();
+        
+        while (buffer.hasRemaining()) {
+            
+            channel.write(buffer);
+            
+        }
+        
+    }
+    
+    // Replaces the file with this record
+    public void write(final Path path) throws IOException {
+        
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            
+            write(channel);
+            
+        }
+        
+    }
+    
+    // Writes every record to the file in one write, after its current contents when appending
+    public static void writeAll(final List<ChessGameRecord> records, final Path path, final boolean append) throws IOException {
+        
+        int size = 0;
+        
+        for (final ChessGameRecord record : records) {
+            
+            size += record.getEncodedSize();
+            
+        }
+        
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        
+        for (final ChessGameRecord record : records) {
+            
+            record.write(buffer);
+            
+        }
+        
+        buffer.flip();
+        
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING)) {
+            
+            while (buffer.hasRemaining()) {
+                
+                channel.write(buffer);
+                
+            }
+            
+        }
+        
+    }
+    
+    // Reads the record at the buffer's position and moves the position past it.
+    public static ChessGameRecord read(final ByteBuffer buffer) {
+        
+        if ((buffer.remaining() < HEADER_BYTES) || (buffer.getInt() != MAGIC)) {
+            
+            throw new IllegalArgumentException("not a chess game record");
+            
+        }
+        
+        final int version = buffer.get();
+        
+        if (version != VERSION) {
+            
+            throw new IllegalArgumentException("unsupported chess game record version " + version);
+            
+        }
+        
+        final int flags = buffer.get();
+        
+        final int resultIndex = buffer.get();
+        
+        buffer.get();
+        
+        final int checkpointInterval = buffer.getShort() & 0xFFFF;
+        
+        buffer.getShort();
+        
+        final int plyCount = buffer.getInt();
+        
+        if ((resultIndex < 0) || (resultIndex >= Result.values().length) || (plyCount < 0)
+                || (plyCount > MAX_PLY_COUNT)) {
+            
+            throw new IllegalArgumentException("corrupt chess game record header");
+            
+        }
+        
+        final int checkpointCount = (checkpointInterval == NO_CHECKPOINTS) ? 0 : (plyCount / checkpointInterval);
+        
+        final boolean hasStartPosition = (flags & FLAG_START_POSITION) != 0;
+        
+        if (buffer.remaining() < ((hasStartPosition ? START_POSITION_BYTES : 0) + (long) movesSize(plyCount)
+                + ((long) checkpointCount * Long.BYTES))) {
+            
+            throw new IllegalArgumentException("truncated chess game record");
+            
+        }
+        
+        final ChessPosition startPosition = hasStartPosition ? readStartPosition(buffer) : null;
+        
+        final var moves = new short[plyCount];
+        
+        final int movesStart = buffer.position();
+        
+        buffer.asShortBuffer().get(moves);
+        
+        buffer.position(movesStart + movesSize(plyCount));
+        
+        final var checkpoints = new long[checkpointCount];
+        
+        buffer.asLongBuffer().get(checkpoints);
+        
+        buffer.position(buffer.position() + (checkpointCount * Long.BYTES));
+        
+        return new ChessGameRecord(startPosition, moves, checkpointInterval, checkpoints, Result.values()[resultIndex]);
+    }
+    
+    public static ChessGameRecord read(final Path path) throws IOException {
+        
+        final List<ChessGameRecord> records = readAll(path);
+        
+        if (records.size() != 1) {
+            
+            throw new IllegalArgumentException("expected one chess game record in " + path + " but found " + records.size());
+            
+        }
+        
+        return records.get(0);
+    }
+    
+    // Maps the file and reads every record in it.
+    public static List<ChessGameRecord> readAll(final Path path) throws IOException {
+        
+        final MappedByteBuffer buffer;
+        
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+            
+        }
+        
+        final List<ChessGameRecord> records = new ArrayList<>();
+        
+        while (buffer.hasRemaining()) {
+            
+            records.add(read(buffer));
+            
+        }
+        
+        return records;
+    }
+    
+    private static ChessPosition readStartPosition(final ByteBuffer buffer) {
+        
+        final var chessPosition = new ChessPosition();
+        
+        for (int square = 0; square < ChessPosition.SQUARE_COUNT; square += 2) {
+            
+            final int pieces = buffer.get() & 0xFF;
+            
+            setStartPiece(chessPosition, square, (pieces & 0xF) - 1);
+            setStartPiece(chessPosition, square + 1, (pieces >>> 4) - 1);
+            
+        }
+        
+        final int sideToMove = buffer.get();
+        final int castlingRights = buffer.get();
+        final int enPassantSquare = buffer.get() - 1;
+        
+        buffer.get();
+        
+        final int halfmoveClock = buffer.getShort() & 0xFFFF;
+        final int fullmoveNumber = buffer.getShort() & 0xFFFF;
+        
+        if (((sideToMove & ~1) != 0) || ((castlingRights & ~ChessPosition.ALL_CASTLING_RIGHTS) != 0)
+                || (enPassantSquare < ChessPosition.NO_SQUARE) || (enPassantSquare >= ChessPosition.SQUARE_COUNT) || (fullmoveNumber == 0)
+                || (Long.bitCount(chessPosition.getPieceBitboard(ChessPosition.piece(ChessPosition.WHITE, ChessPosition.KING))) != 1)
+                || (Long.bitCount(chessPosition.getPieceBitboard(ChessPosition.piece(ChessPosition.BLACK, ChessPosition.KING))) != 1)) {
+            
+            throw new IllegalArgumentException("corrupt chess game record start position");
+            
+        }
+        
+        chessPosition.setSideToMove(sideToMove);
+        chessPosition.setCastlingRights(castlingRights);
+        chessPosition.setEnPassantSquare(enPassantSquare);
+        
+        chessPosition.setHalfmoveClock(halfmoveClock);
+        chessPosition.setFullmoveNumber(fullmoveNumber);
+        
+        return chessPosition;
+    }
+    
+    private static void setStartPiece(final ChessPosition chessPosition, final int square, final int piece) {
+        
+        if (piece >= ChessPosition.PIECE_COUNT) {
+            
+            throw new IllegalArgumentException("corrupt chess game record start position");
+            
+        }
+        
+        if (piece != ChessPosition.NO_PIECE) {
+            
+            chessPosition.setPiece(square, piece);
+            
+        }
+        
+    }
+    
+    private static boolean isStandardStart(final ChessPosition chessPosition) {
+        
+        return (chessPosition.getZobristKey() == STANDARD_START_POSITION.getZobristKey())
+                && (chessPosition.getHalfmoveClock() == 0)
+                && (chessPosition.getFullmoveNumber() == 1);
+    }
+    
+    // Move words padded to a whole number of checkpoint keys
+    private static int movesSize(final int plyCount) {
+        
+        return ((plyCount * Short.BYTES) + (Long.BYTES - 1)) & -Long.BYTES;
+    }
+    
+}
\ No newline at end of file
@@ -0,0 +1,515 @@
+package game.chess;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class ChessGameServer implements AutoCloseable {
+    
+    // Headless game server holding any number of independent ChessGameSessions. Requests are single lines,
+    // answered with one line starting with "ok", "illegal" or "error":
+    //
+    //   new [fen]          ok <game id>
+    //   move <id> <move>   ok <status> | illegal <move>      coordinate notation, e.g. e2e4 or e7e8q
+    //   legal <id>         ok <move>...
+    //   fen <id>           ok <fen>
+    //   close <id>         ok
+    //
+    // Every connection, and every in-process client of the load test, is serviced by its own virtual thread.
+    // On a JDK without virtual threads (before 21) they fall back to pooled platform threads.
+    
+    public static final int DEFAULT_PORT = 7_474;
+    
+    public static final int DEFAULT_LOAD_TEST_SESSIONS = 2_000;
+    
+    // Games still going after this many plies are closed by the load test
+    public static final int DEFAULT_LOAD_TEST_PLIES = 200;
+    
+    // Results of a load test, latencies in nanoseconds. Memory is measured on the whole heap, so it is
+    // only meaningful with nothing else running.
+    public record LoadTestReport(int sessions, long moves, long elapsedNanos, long medianNanos, long p99Nanos, long p999Nanos,
+            long maxNanos, long bytesPerSession, boolean virtualThreads) {
+        
+        public double getMovesPerSecond() {
+            
+            return (elapsedNanos == 0L) ? 0.0 : (moves * 1e9 / elapsedNanos);
+        }
+        
+        @Override
+        public String toString() {
+            
+            return String.format("%,d sessions on %s threads, %,d moves in %.2f s (%,.0f moves/sec)%n"
+                    + "move validation latency: p50 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us%n"
+                    + "memory: %,d bytes per session", sessions, virtualThreads ? "virtual" : "platform", moves, elapsedNanos / 1e9,
+                    getMovesPerSecond(), medianNanos / 1e3, p99Nanos / 1e3, p999Nanos / 1e3, maxNanos / 1e3, bytesPerSession);
+        }
+        
+    }
+    
+    private final Map<Long, ChessGameSession> sessions = new ConcurrentHashMap<>();
+    
+    private final AtomicLong nextSessionId = new AtomicLong();
+    
+    private final ExecutorService executor = newSessionExecutor();
+    
+    private volatile ServerSocket serverSocket;
+    
+    public ChessGameServer() {
+        
+        super();
+        
+    }
+    
+    public ChessGameSession newSession(final ChessPosition startPosition) {
+        
+        final var session = new ChessGameSession(nextSessionId.incrementAndGet(), startPosition);
+        
+        sessions.put(session.getId(), session);
+        
+        return session;
+    }
+    
+    public ChessGameSession getSession(final long id) {
+        
+        final ChessGameSession session = sessions.get(id);
+        
+        if (session == null) {
+            
+            throw new IllegalArgumentException("no game " + id);
+            
+        }
+        
+        return session;
+    }
+    
+    public void closeSession(final long id) {
+        
+        if (sessions.remove(id) == null) {
+            
+            throw new IllegalArgumentException("no game " + id);
+            
+        }
+        
+    }
+    
+    public int getSessionCount() {
+        
+        return sessions.size();
+    }
+    
+    // Answers one request line; never throws for bad requests
+    public String handle(final String request) {
+        
+        final String[] tokens = request.trim().split("\\s+", 3);
+        
+        try {
+            
+            switch (tokens[0]) {
+                
+                case "new" -> {
+                    
+                    final ChessPosition startPosition = (tokens.length > 1)
+                            ? ChessFen.parse(request.trim().substring(tokens[0].length()).trim())
+                            : ChessPosition.startPosition();
+                    
+                    return "ok " + newSession(startPosition).getId();
+                }
+                
+                case "move" -> {
+                    
+                    if (tokens.length < 3) {
+                        
+                        return "error usage: move <id> <move>";
+                        
+                    }
+                    
+                    final ChessGameSession session = getSession(parseId(tokens[1]));
+                    
+                    if (session.play(tokens[2]) == ChessMove.NO_MOVE) {
+                        
+                        return "illegal " + tokens[2];
+                        
+                    }
+                    
+                    return "ok " + status(session.getGameStatus());
+                }
+                
+                case "legal" -> {
+                    
+                    if (tokens.length < 2) {
+                        
+                        return "error usage: legal <id>";
+                        
+                    }
+                    
+                    return "ok " + getSession(parseId(tokens[1])).getLegalMoves();
+                }
+                
+                case "fen" -> {
+                    
+                    if (tokens.length < 2) {
+                        
+                        return "error usage: fen <id>";
+                        
+                    }
+                    
+                    return "ok " + getSession(parseId(tokens[1])).getFen();
+                }
+                
+                case "close" -> {
+                    
+                    if (tokens.length < 2) {
+                        
+                        return "error usage: close <id>";
+                        
+                    }
+                    
+                    closeSession(parseId(tokens[1]));
+                    
+                    return "ok";
+                }
+                
+                default -> {
+                    
+                    return "error unknown request " + tokens[0];
+                }
+                
+            }
+            
+        } catch (final IllegalArgumentException | IllegalStateException exception) {
+            
+            return "error " + exception.getMessage();
+            
+        }
+        
+    }
+    
+    // Accepts connections on the loopback address until closed, one thread per connection
+    public void listen(final int port) throws IOException {
+        
+        serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+        
+        executor.execute(() -> {
+            
+            while (!serverSocket.isClosed()) {
+                
+                try {
+                    
+                    final Socket socket = serverSocket.accept();
+                    
+                    executor.execute(() -> serve(socket));
+                    
+                } catch (final IOException ioException) {
+                    
+                    // Closed while accepting
+                    
+                }
+                
+            }
+            
+        });
+        
+    }
+    
+    public int getPort() {
+        
+        return (serverSocket == null) ? -1 : serverSocket.getLocalPort();
+    }
+    
+    private void serve(final Socket socket) {
+        
+        try (socket;
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.US_ASCII)) {
+            
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                
+                out.println(handle(line));
+                
+            }
+            
+        } catch (final IOException ioException) {
+            
+            // The client went away
+            
+        }
+        
+    }
+    
+    @Override
+    public void close() throws IOException {
+        
+        if (serverSocket != null) {
+            
+            serverSocket.close();
+            
+        }
+        
+        executor.shutdownNow();
+        
+    }
+    
+    // Opens the sessions, then plays all of them at once, each from its own client thread making random
+    // legal moves through handle() until the game ends or reaches the ply limit. The latency of every move
+    // request covers parsing, validation against the legal moves and the game end check.
+    public LoadTestReport runLoadTest(final int sessionCount, final int maxPlies, final long seed) throws InterruptedException {
+        
+        if ((sessionCount < 1) || (maxPlies < 1)) {
+            
+            throw new IllegalArgumentException("load test needs at least 1 session and 1 ply");
+            
+        }
+        
+        final long heapBefore = usedHeap();
+        
+        final var ids = new long[sessionCount];
+        
+        for (int i = 0; i < sessionCount; i++) {
+            
+            ids[i] = newSession(ChessPosition.startPosition()).getId();
+            
+        }
+        
+        final long bytesPerSession = Math.max(0L, (usedHeap() - heapBefore) / sessionCount);
+        
+        final List<Future<long[]>> clients = new ArrayList<>(sessionCount);
+        
+        final long startNanos = System.nanoTime();
+        
+        for (int i = 0; i < sessionCount; i++) {
+            
+            final long id = ids[i];
+            
+            final var random = new SplittableRandom(seed + id);
+            
+            clients.add(executor.submit(() -> playRandomGame(id, maxPlies, random)));
+            
+        }
+        
+        final List<long[]> results = new ArrayList<>(sessionCount);
+        
+        long moves = 0L;
+        
+        for (final Future<long[]> client : clients) {
+            
+            try {
+                
+                final long[] latencies = client.get();
+                
+                results.add(latencies);
+                
+                moves += latencies.length;
+                
+            } catch (final ExecutionException executionException) {
+                
+                throw new IllegalStateException("load test client failed", executionException.getCause());
+                
+            }
+            
+        }
+        
+        final long elapsedNanos = System.nanoTime() - startNanos;
+        
+        final var allLatencies = new long[(int) moves];
+        
+        int offset = 0;
+        
+        for (final long[] latencies : results) {
+            
+            System.arraycopy(latencies, 0, allLatencies, offset, latencies.length);
+            
+            offset += latencies.length;
+            
+        }
+        
+        Arrays.sort(allLatencies);
+        
+        for (final long id : ids) {
+            
+            closeSession(id);
+            
+        }
+        
+        return new LoadTestReport(sessionCount, moves, elapsedNanos, percentile(allLatencies, 0.5), percentile(allLatencies, 0.99),
+                percentile(allLatencies, 0.999), (moves == 0L) ? 0L : allLatencies[allLatencies.length - 1], bytesPerSession,
+                hasVirtualThreads());
+    }
+    
+    private long[] playRandomGame(final long id, final int maxPlies, final SplittableRandom random) {
+        
+        final var latencies = new long[maxPlies];
+        
+        int plies = 0;
+        
+        while (plies < maxPlies) {
+            
+            final String legalMoves = handle("legal " + id).substring(3);
+            
+            if (legalMoves.isEmpty()) {
+                
+                break;
+                
+            }
+            
+            final String[] moves = legalMoves.split(" ");
+            
+            final String request = "move " + id + " " + moves[random.nextInt(moves.length)];
+            
+            final long startNanos = System.nanoTime();
+            
+            final String response = handle(request);
+            
+            latencies[plies++] = System.nanoTime() - startNanos;
+            
+            if (!response.equals("ok ongoing")) {
+                
+                if (!response.startsWith("ok ")) {
+                    
+                    throw new IllegalStateException("game " + id + ": " + request + " -> " + response);
+                    
+                }
+                
+                break;
+                
+            }
+            
+        }
+        
+        return Arrays.copyOf(latencies, plies);
+    }
+    
+    private static String status(final ChessGameStatus gameStatus) {
+        
+        return gameStatus.name().toLowerCase();
+    }
+    
+    private static long parseId(final String id) {
+        
+        try {
+            
+            return Long.parseLong(id);
+            
+        } catch (final NumberFormatException numberFormatException) {
+            
+            throw new IllegalArgumentException("not a game id: " + id);
+            
+        }
+        
+    }
+    
+    private static long percentile(final long[] sortedValues, final double fraction) {
+        
+        return (sortedValues.length == 0) ? 0L
+                : sortedValues[Math.min(sortedValues.length - 1, (int) Math.ceil(fraction * sortedValues.length) - 1)];
+    }
+    
+    private static long usedHeap() {
+        
+        final Runtime runtime = Runtime.getRuntime();
+        
+        System.gc();
+        
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+    
+    public static boolean hasVirtualThreads() {
+        
+        try {
+            
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            
+            return true;
+            
+        } catch (final NoSuchMethodException noSuchMethodException) {
+            
+            return false;
+            
+        }
+        
+    }
+    
+    // A virtual thread per task when the JDK has them, looked up reflectively so the tree still builds on
+    // JDK 17; otherwise a cached pool of daemon platform threads.
+    private static ExecutorService newSessionExecutor() {
+        
+        if (hasVirtualThreads()) {
+            
+            try {
+                
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                
+            } catch (final ReflectiveOperationException reflectiveOperationException) {
+                
+                // Fall back to platform threads below
+                
+            }
+            
+        }
+        
+        final var threadCount = new AtomicInteger();
+        
+        return Executors.newCachedThreadPool(runnable -> {
+            
+            final var thread = new Thread(runnable, "chess-game-session-" + threadCount.incrementAndGet());
+            
+            thread.setDaemon(true);
+            
+            return thread;
+        });
+    }
+    
+    // Usage: ChessGameServer serve [port] | ChessGameServer load [sessions] [max plies]
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        
+        final String mode = (args.length > 0) ? args[0] : "load";
+        
+        try (var server = new ChessGameServer()) {
+            
+            if (mode.equals("serve")) {
+                
+                server.listen((args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_PORT);
+                
+                System.out.println("Listening on port " + server.getPort() + (hasVirtualThreads() ? " with virtual threads" : ""));
+                
+                Thread.currentThread().join();
+                
+            } else if (mode.equals("load")) {
+                
+                final int sessionCount = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_LOAD_TEST_SESSIONS;
+                
+                final int maxPlies = (args.length > 2) ? Integer.parseInt(args[2]) : DEFAULT_LOAD_TEST_PLIES;
+                
+                // Warm up the JIT so the measured latencies are those of compiled code
+                
+                server.runLoadTest(Math.min(sessionCount, 1_000), maxPlies, 0L);
+                
+                System.out.println(server.runLoadTest(sessionCount, maxPlies, 1L));
+                
+            } else {
+                
+                throw new IllegalArgumentException("usage: ChessGameServer serve [port] | ChessGameServer load [sessions] [max plies]");
+                
+            }
+            
+        }
+        
+    }
+    
+}
\ No newline at end of file
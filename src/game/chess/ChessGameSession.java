@@ -0,0 +1,148 @@
+package game.chess;
+
+public final class ChessGameSession {
+    
+    // One game hosted by ChessGameServer: a headless position and its status, with no board or JavaFX
+    // nodes behind it. A fresh session holds about 4 KB, most of it the undo stack of the position.
+    // Requests on a session are serialized on the session itself; sessions never share state.
+    
+    private final long id;
+    
+    private final ChessPosition chessPosition;
+    
+    private ChessGameStatus gameStatus;
+    
+    ChessGameSession(final long id, final ChessPosition startPosition) {
+        
+        this.id = id;
+        
+        chessPosition = new ChessPosition(startPosition);
+        
+        gameStatus = ChessGameStatus.of(chessPosition);
+        
+    }
+    
+    public long getId() {
+        
+        return id;
+    }
+    
+    public synchronized ChessGameStatus getGameStatus() {
+        
+        return gameStatus;
+    }
+    
+    public synchronized int getPlyCount() {
+        
+        return chessPosition.getMoveCount();
+    }
+    
+    public synchronized String getFen() {
+        
+        return ChessFen.toFen(chessPosition);
+    }
+    
+    // Legal moves of the side to move in coordinate notation, separated by spaces
+    public synchronized String getLegalMoves() {
+        
+        final var legalMoves = new int[ChessMove.MAX_MOVES];
+        
+        final int legalMoveCount = ChessMoveGenerator.generateLegalMoves(chessPosition, legalMoves, 0);
+        
+        final var names = new StringBuilder(legalMoveCount * 5);
+        
+        for (int i = 0; i < legalMoveCount; i++) {
+            
+            if (i > 0) {
+                
+                names.append(' ');
+                
+            }
+            
+            names.append(ChessMove.toString(legalMoves[i]));
+            
+        }
+        
+        return names.toString();
+    }
+    
+    // Plays a move in coordinate notation, such as "e2e4" or "e7e8q", after checking it against the legal
+    // moves, and updates the game status. Returns the move played, or ChessMove.NO_MOVE when it is not
+    // legal or not a move at all.
+    public synchronized int play(final CharSequence move) {
+        
+        if (gameStatus.isGameOver()) {
+            
+            throw new IllegalStateException("game " + id + " is over: " + gameStatus.getDisplayName());
+            
+        }
+        
+        final int legalMove = findLegalMove(move);
+        
+        if (legalMove != ChessMove.NO_MOVE) {
+            
+            chessPosition.makeMove(legalMove);
+            
+            gameStatus = ChessGameStatus.of(chessPosition);
+            
+        }
+        
+        return legalMove;
+    }
+    
+    public synchronized ChessGameRecord toGameRecord() {
+        
+        return ChessGameRecord.of(chessPosition, ChessGameRecord.DEFAULT_CHECKPOINT_INTERVAL, ChessGameRecord.Result.of(chessPosition));
+    }
+    
+    private int findLegalMove(final CharSequence move) {
+        
+        if ((move.length() != 4) && (move.length() != 5)) {
+            
+            return ChessMove.NO_MOVE;
+            
+        }
+        
+        final int sourceSquare = parseSquare(move, 0);
+        
+        final int destinationSquare = parseSquare(move, 2);
+        
+        final int promotionType = (move.length() == 5) ? "nbrq".indexOf(move.charAt(4)) : -1;
+        
+        if ((sourceSquare < 0) || (destinationSquare < 0) || ((move.length() == 5) && (promotionType < 0))) {
+            
+            return ChessMove.NO_MOVE;
+            
+        }
+        
+        final var legalMoves = new int[ChessMove.MAX_MOVES];
+        
+        final int legalMoveCount = ChessMoveGenerator.generateLegalMoves(chessPosition, legalMoves, 0);
+        
+        for (int i = 0; i < legalMoveCount; i++) {
+            
+            final int legalMove = legalMoves[i];
+            
+            if ((ChessMove.getSourceSquare(legalMove) == sourceSquare) && (ChessMove.getDestinationSquare(legalMove) == destinationSquare)
+                    && (ChessMove.isPromotion(legalMove) ? ((ChessMove.getFlags(legalMove) & 3) == promotionType) : (promotionType < 0))) {
+                
+                return legalMove;
+                
+            }
+            
+        }
+        
+        return ChessMove.NO_MOVE;
+    }
+    
+    // Square of a name such as "e4", or -1
+    private static int parseSquare(final CharSequence move, final int index) {
+        
+        final int x = move.charAt(index) - 'a';
+        
+        final int y = '8' - move.charAt(index + 1);
+        
+        return ((x >= 0) && (x < 8) && (y >= 0) && (y < 8)) ? ChessPosition.square(x, y) : -1;
+    }
+    
+}
\ No newline at end of file
@@ -0,0 +1,75 @@
+package game.chess;
+
+public enum ChessGameStatus {
+    
+    ONGOING("Ongoing", false),
+    
+    CHECKMATE("Checkmate", false),
+    
+    STALEMATE("Stalemate", true),
+    
+    THREEFOLD_REPETITION("Threefold repetition", true),
+    
+    FIFTY_MOVE_RULE("Fifty-move rule", true),
+    
+    INSUFFICIENT_MATERIAL("Insufficient material", true);
+    
+    private final String displayName;
+    
+    private final boolean draw;
+    
+    ChessGameStatus(final String displayName, final boolean draw) {
+        
+        this.displayName = displayName;
+        
+        this.draw = draw;
+        
+    }
+    
+    public final String getDisplayName() {
+        
+        return displayName;
+    }
+    
+    public final boolean isDraw() {
+        
+        return draw;
+    }
+    
+    public final boolean isGameOver() {
+        
+        return this != ONGOING;
+    }
+    
+    // Status of the game for the side to move. The move generator stops at the first legal move
+    // and the draw rules only read counters and the key history, so this stays in the microseconds.
+    public static ChessGameStatus of(final ChessPosition chessPosition) {
+        
+        if (!ChessMoveGenerator.hasLegalMove(chessPosition)) {
+            
+            return chessPosition.isInCheck() ? CHECKMATE : STALEMATE;
+            
+        }
+        
+        if (chessPosition.hasInsufficientMaterial()) {
+            
+            return INSUFFICIENT_MATERIAL;
+            
+        }
+        
+        if (chessPosition.getRepetitionCount() >= 2) {
+            
+            return THREEFOLD_REPETITION;
+            
+        }
+        
+        if (chessPosition.getHalfmoveClock() >= 100) {
+            
+            return FIFTY_MOVE_RULE;
+            
+        }
+        
+        return ONGOING;
+    }
+    
+}
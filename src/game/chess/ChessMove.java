@@ -0,0 +1,95 @@
+package game.chess;
+
+public final class ChessMove {
+    
+    // A move is packed into the low 16 bits of an int:
+    // bits 0-5 source square, bits 6-11 destination square, bits 12-15 flags.
+    
+    public static final int NO_MOVE = 0;
+    
+    public static final int QUIET = 0;
+    
+    public static final int DOUBLE_PAWN_PUSH = 1;
+    
+    public static final int KING_CASTLE = 2;
+    
+    public static final int QUEEN_CASTLE = 3;
+    
+    public static final int CAPTURE = 4;
+    
+    public static final int EN_PASSANT = 5;
+    
+    public static final int PROMOTION = 8;
+    
+    public static final int KNIGHT_PROMOTION = 8;
+    
+    public static final int BISHOP_PROMOTION = 9;
+    
+    public static final int ROOK_PROMOTION = 10;
+    
+    public static final int QUEEN_PROMOTION = 11;
+    
+    public static final int MAX_MOVES = 256;
+    
+    private ChessMove() {
+        
+        super();
+        
+    }
+    
+    public static int of(final int sourceSquare, final int destinationSquare, final int flags) {
+        
+        return sourceSquare | (destinationSquare << 6) | (flags << 12);
+    }
+    
+    public static int getSourceSquare(final int move) {
+        
+        return move & 0x3F;
+    }
+    
+    public static int getDestinationSquare(final int move) {
+        
+        return (move >>> 6) & 0x3F;
+    }
+    
+    public static int getFlags(final int move) {
+        
+        return (move >>> 12) & 0xF;
+    }
+    
+    public static boolean isCapture(final int move) {
+        
+        return (getFlags(move) & CAPTURE) != 0;
+    }
+    
+    public static boolean isPromotion(final int move) {
+        
+        return (getFlags(move) & PROMOTION) != 0;
+    }
+    
+    public static boolean isCastle(final int move) {
+        
+        final int flags = getFlags(move);
+        
+        return (flags == KING_CASTLE) || (flags == QUEEN_CASTLE);
+    }
+    
+    public static int getPromotionType(final int move) {
+        
+        return ChessPosition.KNIGHT + (getFlags(move) & 3);
+    }
+    
+    public static String squareName(final int square) {
+        
+        return String.valueOf((char) ('a' + ChessPosition.squareX(square))) + (char) ('8' - ChessPosition.squareY(square));
+    }
+    
+    // Coordinate notation, e.g. "e2e4" or "e7e8q"
+    public static String toString(final int move) {
+        
+        final String name = squareName(getSourceSquare(move)) + squareName(getDestinationSquare(move));
+        
+        return isPromotion(move) ? (name + "nbrq".charAt(getFlags(move) & 3)) : name;
+    }
+    
+}
\ No newline at end of file
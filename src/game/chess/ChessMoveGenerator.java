@@ -0,0 +1,438 @@
+package game.chess;
+
+import static game.chess.ChessPosition.BISHOP;
+import static game.chess.ChessPosition.KNIGHT;
+import static game.chess.ChessPosition.NO_SQUARE;
+import static game.chess.ChessPosition.PAWN;
+import static game.chess.ChessPosition.QUEEN;
+import static game.chess.ChessPosition.ROOK;
+import static game.chess.ChessPosition.WHITE;
+import static game.chess.ChessPosition.piece;
+
+public final class ChessMoveGenerator {
+    
+    private static final long LAST_ROWS = 0xFF000000000000FFL;
+    
+    private ChessMoveGenerator() {
+        
+        super();
+        
+    }
+    
+    // Writes every legal move of the side to move into the buffer, starting at the offset,
+    // and returns the offset just past the last move written.
+    public static int generateLegalMoves(final ChessPosition position, final int[] moves, final int offset) {
+        
+        return generate(position, moves, offset, -1L);
+    }
+    
+    // Same as generateLegalMoves, limited to captures and promotions (quiescence search).
+    public static int generateLegalCaptures(final ChessPosition position, final int[] moves, final int offset) {
+        
+        return generate(position, moves, offset, position.colorBitboards[position.sideToMove ^ 1]);
+    }
+    
+    // Whether the side to move has any legal move, stopping at the first one found. Castling is never
+    // needed: whenever it is legal, so is the king's step towards the rook.
+    public static boolean hasLegalMove(final ChessPosition position) {
+        
+        final long[] pieces = position.pieceBitboards;
+        
+        final int us = position.sideToMove;
+        final int them = us ^ 1;
+        
+        final long own = position.colorBitboards[us];
+        final long enemy = position.colorBitboards[them];
+        final long occupancy = position.occupancy;
+        
+        final int kingSquare = position.getKingSquare(us);
+        
+        final long occupancyWithoutKing = occupancy ^ (1L << kingSquare);
+        
+        for (long kingTargets = ChessAttacks.kingAttacks(kingSquare) & ~own; kingTargets != 0L; kingTargets &= kingTargets - 1) {
+            
+            if (!position.isSquareAttacked(Long.numberOfTrailingZeros(kingTargets), them, occupancyWithoutKing)) {
+                
+                return true;
+                
+            }
+            
+        }
+        
+        final long checkers = position.attackersTo(kingSquare, occupancy) & enemy;
+        
+        final int checkerCount = Long.bitCount(checkers);
+        
+        if (checkerCount > 1) {
+            
+            return false;
+            
+        }
+        
+        final long checkMask = (checkerCount == 0)
+                ? -1L
+                : (checkers | ChessAttacks.between(kingSquare, Long.numberOfTrailingZeros(checkers)));
+        
+        final long enemyRooksQueens = pieces[piece(them, ROOK)] | pieces[piece(them, QUEEN)];
+        final long enemyBishopsQueens = pieces[piece(them, BISHOP)] | pieces[piece(them, QUEEN)];
+        
+        long pinned = 0L;
+        
+        long snipers = (ChessAttacks.rookAttacks(kingSquare, enemy) & enemyRooksQueens)
+                | (ChessAttacks.bishopAttacks(kingSquare, enemy) & enemyBishopsQueens);
+        
+        while (snipers != 0L) {
+            
+            final long blockers = ChessAttacks.between(kingSquare, Long.numberOfTrailingZeros(snipers)) & occupancy;
+            
+            snipers &= snipers - 1;
+            
+            if (Long.bitCount(blockers) == 1) {
+                
+                pinned |= blockers & own;
+                
+            }
+            
+        }
+        
+        final long targetMask = ~own & checkMask;
+        
+        for (int type = KNIGHT; type <= QUEEN; type++) {
+            
+            for (long sources = pieces[piece(us, type)]; sources != 0L; sources &= sources - 1) {
+                
+                final int from = Long.numberOfTrailingZeros(sources);
+                
+                long targets = ChessAttacks.attacks(type, from, occupancy) & targetMask;
+                
+                if ((pinned & (1L << from)) != 0L) {
+                    
+                    targets &= ChessAttacks.line(kingSquare, from);
+                    
+                }
+                
+                if (targets != 0L) {
+                    
+                    return true;
+                    
+                }
+                
+            }
+            
+        }
+        
+        final int forward = (us == WHITE) ? -8 : 8;
+        
+        final int startRow = (us == WHITE) ? 6 : 1;
+        
+        for (long pawns = pieces[piece(us, PAWN)]; pawns != 0L; pawns &= pawns - 1) {
+            
+            final int from = Long.numberOfTrailingZeros(pawns);
+            
+            long targets = ChessAttacks.pawnAttacks(us, from) & enemy;
+            
+            final int oneStep = from + forward;
+            
+            if ((occupancy & (1L << oneStep)) == 0L) {
+                
+                targets |= 1L << oneStep;
+                
+                if ((ChessPosition.squareY(from) == startRow) && ((occupancy & (1L << (oneStep + forward))) == 0L)) {
+                    
+                    targets |= 1L << (oneStep + forward);
+                    
+                }
+                
+            }
+            
+            targets &= checkMask;
+            
+            if ((pinned & (1L << from)) != 0L) {
+                
+                targets &= ChessAttacks.line(kingSquare, from);
+                
+            }
+            
+            if (targets != 0L) {
+                
+                return true;
+                
+            }
+            
+        }
+        
+        final int enPassantSquare = position.enPassantSquare;
+        
+        if (enPassantSquare != NO_SQUARE) {
+            
+            final long capturedBit = 1L << (enPassantSquare - forward);
+            
+            for (long sources = ChessAttacks.pawnAttacks(them, enPassantSquare) & pieces[piece(us, PAWN)]; sources != 0L; sources &= sources - 1) {
+                
+                final long occupancyAfter = (occupancy ^ (1L << Long.numberOfTrailingZeros(sources)) ^ capturedBit) | (1L << enPassantSquare);
+                
+                if ((((checkMask & capturedBit) != 0L) || ((checkMask & (1L << enPassantSquare)) != 0L))
+                        && ((ChessAttacks.rookAttacks(kingSquare, occupancyAfter) & enemyRooksQueens) == 0L)
+                        && ((ChessAttacks.bishopAttacks(kingSquare, occupancyAfter) & enemyBishopsQueens) == 0L)) {
+                    
+                    return true;
+                    
+                }
+                
+            }
+            
+        }
+        
+        return false;
+    }
+    
+    private static int generate(final ChessPosition position, final int[] moves, final int offset, final long targetFilter) {
+        
+        final long[] pieces = position.pieceBitboards;
+        
+        final int us = position.sideToMove;
+        final int them = us ^ 1;
+        
+        final long own = position.colorBitboards[us];
+        final long enemy = position.colorBitboards[them];
+        final long occupancy = position.occupancy;
+        
+        final int kingSquare = position.getKingSquare(us);
+        
+        final long enemyRooksQueens = pieces[piece(them, ROOK)] | pieces[piece(them, QUEEN)];
+        final long enemyBishopsQueens = pieces[piece(them, BISHOP)] | pieces[piece(them, QUEEN)];
+        
+        final long checkers = position.attackersTo(kingSquare, occupancy) & enemy;
+        
+        int count = offset;
+        
+        // King moves: the king may not step onto an attacked square, judged with the king
+        // removed so that sliders see through its current square.
+        
+        final long occupancyWithoutKing = occupancy ^ (1L << kingSquare);
+        
+        long kingTargets = ChessAttacks.kingAttacks(kingSquare) & ~own & targetFilter;
+        
+        while (kingTargets != 0L) {
+            
+            final int to = Long.numberOfTrailingZeros(kingTargets);
+            
+            kingTargets &= kingTargets - 1;
+            
+            if (!position.isSquareAttacked(to, them, occupancyWithoutKing)) {
+                
+                moves[count++] = ChessMove.of(kingSquare, to, ((enemy & (1L << to)) != 0L) ? ChessMove.CAPTURE : ChessMove.QUIET);
+                
+            }
+            
+        }
+        
+        final int checkerCount = Long.bitCount(checkers);
+        
+        if (checkerCount > 1) {
+            
+            // Double check: only the king can move
+            
+            return count;
+            
+        }
+        
+        // Destinations that resolve a single check: capture the checker or block its ray
+        final long checkMask = (checkerCount == 0)
+                ? -1L
+                : (checkers | ChessAttacks.between(kingSquare, Long.numberOfTrailingZeros(checkers)));
+        
+        // Pinned pieces may only move along the line between their king and the pinning slider
+        
+        long pinned = 0L;
+        
+        long snipers = (ChessAttacks.rookAttacks(kingSquare, enemy) & enemyRooksQueens)
+                | (ChessAttacks.bishopAttacks(kingSquare, enemy) & enemyBishopsQueens);
+        
+        while (snipers != 0L) {
+            
+            final int sniperSquare = Long.numberOfTrailingZeros(snipers);
+            
+            snipers &= snipers - 1;
+            
+            final long blockers = ChessAttacks.between(kingSquare, sniperSquare) & occupancy;
+            
+            if (Long.bitCount(blockers) == 1) {
+                
+                pinned |= blockers & own;
+                
+            }
+            
+        }
+        
+        final long targetMask = ~own & checkMask & targetFilter;
+        
+        // Knights, bishops, rooks and queens
+        
+        for (int type = KNIGHT; type <= QUEEN; type++) {
+            
+            long sources = pieces[piece(us, type)];
+            
+            while (sources != 0L) {
+                
+                final int from = Long.numberOfTrailingZeros(sources);
+                
+                sources &= sources - 1;
+                
+                long targets = ChessAttacks.attacks(type, from, occupancy) & targetMask;
+                
+                if ((pinned & (1L << from)) != 0L) {
+                    
+                    targets &= ChessAttacks.line(kingSquare, from);
+                    
+                }
+                
+                while (targets != 0L) {
+                    
+                    final int to = Long.numberOfTrailingZeros(targets);
+                    
+                    targets &= targets - 1;
+                    
+                    moves[count++] = ChessMove.of(from, to, ((enemy & (1L << to)) != 0L) ? ChessMove.CAPTURE : ChessMove.QUIET);
+                    
+                }
+                
+            }
+            
+        }
+        
+        // Pawns
+        
+        final int forward = (us == WHITE) ? -8 : 8;
+        
+        final int startRow = (us == WHITE) ? 6 : 1;
+        
+        long pawns = pieces[piece(us, PAWN)];
+        
+        while (pawns != 0L) {
+            
+            final int from = Long.numberOfTrailingZeros(pawns);
+            
+            pawns &= pawns - 1;
+            
+            long targets = ChessAttacks.pawnAttacks(us, from) & enemy;
+            
+            final int oneStep = from + forward;
+            
+            if ((occupancy & (1L << oneStep)) == 0L) {
+                
+                targets |= 1L << oneStep;
+                
+                if ((ChessPosition.squareY(from) == startRow) && ((occupancy & (1L << (oneStep + forward))) == 0L)) {
+                    
+                    targets |= 1L << (oneStep + forward);
+                    
+                }
+                
+            }
+            
+            targets &= checkMask;
+            
+            if ((pinned & (1L << from)) != 0L) {
+                
+                targets &= ChessAttacks.line(kingSquare, from);
+                
+            }
+            
+            // Quiet pushes are only filtered out when they don't promote
+            targets &= targetFilter | LAST_ROWS;
+            
+            while (targets != 0L) {
+                
+                final int to = Long.numberOfTrailingZeros(targets);
+                
+                targets &= targets - 1;
+                
+                final int captureFlag = ((enemy & (1L << to)) != 0L) ? ChessMove.CAPTURE : ChessMove.QUIET;
+                
+                if (((1L << to) & LAST_ROWS) != 0L) {
+                    
+                    for (int promotion = ChessMove.QUEEN_PROMOTION; promotion >= ChessMove.KNIGHT_PROMOTION; promotion--) {
+                        
+                        moves[count++] = ChessMove.of(from, to, promotion | captureFlag);
+                        
+                    }
+                    
+                } else if (to == (oneStep + forward)) {
+                    
+                    moves[count++] = ChessMove.of(from, to, ChessMove.DOUBLE_PAWN_PUSH);
+                    
+                } else {
+                    
+                    moves[count++] = ChessMove.of(from, to, captureFlag);
+                    
+                }
+                
+            }
+            
+        }
+        
+        // En passant: the only move removing two pieces from one row, so it is checked directly
+        
+        final int enPassantSquare = position.enPassantSquare;
+        
+        if (enPassantSquare != NO_SQUARE) {
+            
+            final int capturedSquare = enPassantSquare - forward;
+            
+            final long capturedBit = 1L << capturedSquare;
+            
+            long sources = ChessAttacks.pawnAttacks(them, enPassantSquare) & pieces[piece(us, PAWN)];
+            
+            while (sources != 0L) {
+                
+                final int from = Long.numberOfTrailingZeros(sources);
+                
+                sources &= sources - 1;
+                
+                final long occupancyAfter = (occupancy ^ (1L << from) ^ capturedBit) | (1L << enPassantSquare);
+                
+                if ((((checkMask & capturedBit) != 0L) || ((checkMask & (1L << enPassantSquare)) != 0L))
+                        && ((ChessAttacks.rookAttacks(kingSquare, occupancyAfter) & enemyRooksQueens) == 0L)
+                        && ((ChessAttacks.bishopAttacks(kingSquare, occupancyAfter) & enemyBishopsQueens) == 0L)) {
+                    
+                    moves[count++] = ChessMove.of(from, enPassantSquare, ChessMove.EN_PASSANT);
+                    
+                }
+                
+            }
+            
+        }
+        
+        // Castling
+        
+        if ((checkerCount == 0) && (targetFilter == -1L)) {
+            
+            final int kingSide = (us == WHITE) ? ChessPosition.WHITE_KING_SIDE : ChessPosition.BLACK_KING_SIDE;
+            
+            final int queenSide = (us == WHITE) ? ChessPosition.WHITE_QUEEN_SIDE : ChessPosition.BLACK_QUEEN_SIDE;
+            
+            if (((position.castlingRights & kingSide) != 0)
+                    && ((occupancy & ((1L << (kingSquare + 1)) | (1L << (kingSquare + 2)))) == 0L)
+                    && !position.isSquareAttacked(kingSquare + 1, them, occupancy)
+                    && !position.isSquareAttacked(kingSquare + 2, them, occupancy)) {
+                
+                moves[count++] = ChessMove.of(kingSquare, kingSquare + 2, ChessMove.KING_CASTLE);
+                
+            }
+            
+            if (((position.castlingRights & queenSide) != 0)
+                    && ((occupancy & ((1L << (kingSquare - 1)) | (1L << (kingSquare - 2)) | (1L << (kingSquare - 3)))) == 0L)
+                    && !position.isSquareAttacked(kingSquare - 1, them, occupancy)
+                    && !position.isSquareAttacked(kingSquare - 2, them, occupancy)) {
+                
+                moves[count++] = ChessMove.of(kingSquare, kingSquare - 2, ChessMove.QUEEN_CASTLE);
+                
+            }
+            
+        }
+        
+        return count;
+    }
+    
+}
\ No newline at end of file
@@ -0,0 +1,170 @@
+package game.chess;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+public final class ChessPerft {
+    
+    private static final int MAX_DEPTH = 32;
+    
+    // Moves are made and unmade on this one position, so the tree walk allocates nothing
+    private final ChessPosition position = new ChessPosition();
+    
+    private final int[] moves = new int[(MAX_DEPTH + 1) * ChessMove.MAX_MOVES];
+    
+    // Counts the leaf nodes of the legal move tree, single-threaded.
+    public long perft(final ChessPosition chessPosition, final int depth) {
+        
+        if ((depth < 0) || (depth > MAX_DEPTH)) {
+            
+            throw new IllegalArgumentException("depth must be between 0 and " + MAX_DEPTH);
+            
+        }
+        
+        position.copyFrom(chessPosition);
+        
+        return (depth == 0) ? 1L : perft(0, depth);
+    }
+    
+    private long perft(final int ply, final int depth) {
+        
+        final int start = ply * ChessMove.MAX_MOVES;
+        
+        final int end = ChessMoveGenerator.generateLegalMoves(position, moves, start);
+        
+        if (depth == 1) {
+            
+            // Bulk counting: the moves at the last ply are not played
+            
+            return end - start;
+            
+        }
+        
+        long nodes = 0L;
+        
+        for (int i = start; i < end; i++) {
+            
+            position.makeMove(moves[i]);
+            
+            nodes += perft(ply + 1, depth - 1);
+            
+            position.unmakeMove();
+            
+        }
+        
+        return nodes;
+    }
+    
+    @SuppressWarnings("serial")
+    private static final class DivideTask
+            extends RecursiveTask<Long> {
+        
+        private final ChessPosition chessPosition;
+        
+        private final int depth;
+        
+        private DivideTask(final ChessPosition chessPosition, final int depth) {
+            
+            this.chessPosition = chessPosition;
+            
+            this.depth = depth;
+            
+        }
+        
+        @Override
+        protected Long compute() {
+            
+            return new ChessPerft().perft(chessPosition, depth);
+        }
+        
+    }
+    
+    // Splits the root moves across the pool and prints the node count below each of them.
+    public static long divide(final ChessPosition chessPosition, final int depth,
+                              final ForkJoinPool forkJoinPool, final PrintStream out) {
+        
+        if (depth < 1) {
+            
+            throw new IllegalArgumentException("depth must be at least 1");
+            
+        }
+        
+        final long startTime = System.nanoTime();
+        
+        final int[] rootMoves = new int[ChessMove.MAX_MOVES];
+        
+        final int rootMoveCount = ChessMoveGenerator.generateLegalMoves(chessPosition, rootMoves, 0);
+        
+        final List<DivideTask> tasks = new ArrayList<>(rootMoveCount);
+        
+        for (int i = 0; i < rootMoveCount; i++) {
+            
+            final var child = new ChessPosition(chessPosition);
+            
+            child.makeMove(rootMoves[i]);
+            
+            tasks.add(new DivideTask(child, depth - 1));
+            
+        }
+        
+        final long nodes = forkJoinPool.invoke(new RecursiveTask<Long>() {
+            
+            @Override
+            protected Long compute() {
+                
+                invokeAll(tasks);
+                
+                long total = 0L;
+                
+                for (final DivideTask task : tasks) {
+                    
+                    total += task.join();
+                    
+                }
+                
+                return total;
+            }
+            
+        });
+        
+        final long elapsedNanos = Math.max(System.nanoTime() - startTime, 1L);
+        
+        for (int i = 0; i < rootMoveCount; i++) {
+            
+            out.println(ChessMove.toString(rootMoves[i]) + ": " + tasks.get(i).join());
+            
+        }
+        
+        out.println();
+        out.println("Moves: " + rootMoveCount);
+        out.println("Nodes: " + nodes);
+        out.printf("Time: %.3f s%n", elapsedNanos / 1e9);
+        out.printf("Nodes/sec: %,d%n", (long) (nodes * 1e9 / elapsedNanos));
+        
+        return nodes;
+    }
+    
+    // Usage: ChessPerft <depth> [FEN]
+    public static void main(final String[] args) {
+        
+        final int depth = (args.length > 0) ? Integer.parseInt(args[0]) : 5;
+        
+        final String fen = (args.length > 1)
+                ? String.join(" ", List.of(args).subList(1, args.length))
+                : ChessFen.START_POSITION;
+        
+        final ChessPosition chessPosition = ChessFen.parse(fen);
+        
+        System.out.println("Position: " + fen);
+        System.out.println("Depth: " + depth);
+        System.out.println("Threads: " + ForkJoinPool.commonPool().getParallelism());
+        System.out.println();
+        
+        divide(chessPosition, depth, ForkJoinPool.commonPool(), System.out);
+        
+    }
+    
+}
\ No newline at end of file
@@ -0,0 +1,1049 @@
+package game.chess;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+public final class ChessPgnReader {
+    
+    // Reads PGN files through memory-mapped windows of at most chunkBytes, one game at a time, so memory use
+    // does not grow with the file. Moves are resolved from SAN against the legal move generator. Games that
+    // don't resolve are skipped and counted rather than failing the whole import.
+    
+    public static final int DEFAULT_CHUNK_BYTES = 64 << 20;
+    
+    // Smallest share of the file worth handing to a thread of its own
+    private static final long MIN_SPLIT_BYTES = 1L << 20;
+    
+    private static final int SPLIT_SCAN_BYTES = 1 << 16;
+    
+    // Each scan window is mapped this much further, so a tag line that starts near its end is still read whole
+    private static final int MAX_TAG_LINE_BYTES = 1 << 12;
+    
+    private static final ChessPosition START_POSITION = ChessPosition.startPosition();
+    
+    public record Game(Map<String, String> tags, ChessGameRecord gameRecord) {
+        
+        // The tag value, or null when the game doesn't have the tag
+        public String getTag(final String name) {
+            
+            return tags.get(name);
+        }
+        
+    }
+    
+    public record Summary(long games, long skippedGames, long bytes, long elapsedNanos) {
+        
+        public double getGamesPerSecond() {
+            
+            return (elapsedNanos == 0L) ? 0.0 : (games * 1e9 / elapsedNanos);
+        }
+        
+        public double getMegabytesPerSecond() {
+            
+            return (elapsedNanos == 0L) ? 0.0 : (bytes * 1e3 / 1048576.0 / (elapsedNanos / 1e6));
+        }
+        
+        @Override
+        public String toString() {
+            
+            return String.format("%,d games (%,d skipped) in %.3f s: %,.0f games/sec, %.1f MB/sec", games, skippedGames,
+                    elapsedNanos / 1e9, getGamesPerSecond(), getMegabytesPerSecond());
+        }
+        
+    }
+    
+    private final int chunkBytes;
+    
+    private final Consumer<Game> consumer;
+    
+    private final ChessPosition chessPosition = new ChessPosition();
+    
+    private final int[] legalMoves = new int[ChessMove.MAX_MOVES];
+    
+    private final Map<String, String> tags = new LinkedHashMap<>();
+    
+    // Tag names and values are copied here before decoding
+    private byte[] text = new byte[256];
+    
+    // State of the game being read
+    private boolean movetextStarted;
+    
+    private boolean gameValid;
+    
+    private ChessGameRecord.Result gameResult;
+    
+    private long games;
+    
+    private long skippedGames;
+    
+    private ChessPgnReader(final int chunkBytes, final Consumer<Game> consumer) {
+        
+        if (chunkBytes < 1) {
+            
+            throw new IllegalArgumentException("chunk size must be positive");
+            
+        }
+        
+        this.chunkBytes = chunkBytes;
+        
+        this.consumer = consumer;
+        
+    }
+    
+    public static Summary read(final Path path, final Consumer<Game> consumer) throws IOException {
+        
+        return read(path, consumer, DEFAULT_CHUNK_BYTES);
+    }
+    
+    public static Summary read(final Path path, final Consumer<Game> consumer, final int chunkBytes) throws IOException {
+        
+        final long startTime = System.nanoTime();
+        
+        final var chessPgnReader = new ChessPgnReader(chunkBytes, consumer);
+        
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            
+            final long size = channel.size();
+            
+            chessPgnReader.readRange(channel, 0L, size, size);
+            
+            return new Summary(chessPgnReader.games, chessPgnReader.skippedGames, size, System.nanoTime() - startTime);
+            
+        }
+        
+    }
+    
+    @SuppressWarnings("serial")
+    private static final class RangeTask
+            extends RecursiveTask<Summary> {
+        
+        private final FileChannel channel;
+        
+        private final long start;
+        
+        private final long end;
+        
+        private final int chunkBytes;
+        
+        private final Consumer<Game> consumer;
+        
+        private RangeTask(final FileChannel channel, final long start, final long end, final int chunkBytes,
+                final Consumer<Game> consumer) {
+            
+            this.channel = channel;
+            
+            this.start = start;
+            
+            this.end = end;
+            
+            this.chunkBytes = chunkBytes;
+            
+            this.consumer = consumer;
+            
+        }
+        
+        @Override
+        protected Summary compute() {
+            
+            final var chessPgnReader = new ChessPgnReader(chunkBytes, consumer);
+            
+            try {
+                
+                chessPgnReader.readRange(channel, start, end, channel.size());
+                
+            } catch (final IOException ioException) {
+                
+                throw new IllegalStateException("cannot read PGN bytes " + start + " to " + end, ioException);
+                
+            }
+            
+            return new Summary(chessPgnReader.games, chessPgnReader.skippedGames, end - start, 0L);
+        }
+        
+    }
+    
+    // Splits the file at game boundaries into one range per thread of the pool and reads the ranges in
+    // parallel. The consumer is called from the pool's threads and has to be thread safe.
+    public static Summary read(final Path path, final Consumer<Game> consumer, final ForkJoinPool forkJoinPool) throws IOException {
+        
+        final long startTime = System.nanoTime();
+        
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            
+            final long size = channel.size();
+            
+            final int rangeCount = (int) Math.max(1L, Math.min(forkJoinPool.getParallelism(), size / MIN_SPLIT_BYTES));
+            
+            final List<RangeTask> tasks = new ArrayList<>(rangeCount);
+            
+            long start = 0L;
+            
+            for (int i = 1; i <= rangeCount; i++) {
+                
+                final long end = (i == rangeCount) ? size : findGameStart(channel, Math.max(start, size * i / rangeCount), size);
+                
+                if (end > start) {
+                    
+                    tasks.add(new RangeTask(channel, start, end, DEFAULT_CHUNK_BYTES, consumer));
+                    
+                    start = end;
+                    
+                }
+                
+            }
+            
+            final Summary summary = forkJoinPool.invoke(new RecursiveTask<>() {
+                
+                @Override
+                protected Summary compute() {
+                    
+                    invokeAll(tasks);
+                    
+                    long games = 0L;
+                    
+                    long skippedGames = 0L;
+                    
+                    for (final RangeTask task : tasks) {
+                        
+                        final Summary rangeSummary = task.join();
+                        
+                        games += rangeSummary.games();
+                        
+                        skippedGames += rangeSummary.skippedGames();
+                        
+                    }
+                    
+                    return new Summary(games, skippedGames, size, 0L);
+                }
+                
+            });
+            
+            return new Summary(summary.games(), summary.skippedGames(), size, System.nanoTime() - startTime);
+            
+        }
+        
+    }
+    
+    // Offset of the first tag line at or after the offset whose previous line (blank lines aside) is not a
+    // tag line: the first tag of a game. The partly skipped first line counts as a tag line, so
+    // a split never lands inside a tag section.
+    private static long findGameStart(final FileChannel channel, final long offset, final long size) throws IOException {
+        
+        boolean previousLineIsTag = true;
+        
+        boolean atLineStart = false;
+        
+        for (long windowStart = offset; windowStart < size; windowStart += SPLIT_SCAN_BYTES) {
+            
+            final int windowSize = (int) Math.min(SPLIT_SCAN_BYTES, size - windowStart);
+            
+            final int mappedSize = (int) Math.min(SPLIT_SCAN_BYTES + MAX_TAG_LINE_BYTES, size - windowStart);
+            
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, mappedSize);
+            
+            for (int i = 0; i < windowSize; i++) {
+                
+                final byte b = buffer.get(i);
+                
+                if (atLineStart && (b != '\n') && (b != '\r')) {
+                    
+                    if ((b == '[') && isTagLine(buffer, i + 1, mappedSize)) {
+                        
+                        if (!previousLineIsTag) {
+                            
+                            return windowStart + i;
+                            
+                        }
+                        
+                    } else {
+                        
+                        previousLineIsTag = false;
+                        
+                    }
+                    
+                    atLineStart = false;
+                    
+                }
+                
+                if (b == '\n') {
+                    
+                    atLineStart = true;
+                    
+                }
+                
+            }
+            
+        }
+        
+        return size;
+    }
+    
+    // Whether the line goes on from after its '[' like a tag, with a name followed by a quoted value.
+    // Brackets inside comments that span lines are not mistaken for the start of a game this way.
+    private static boolean isTagLine(final MappedByteBuffer buffer, final int start, final int limit) {
+        
+        int index = start;
+        
+        while ((index < limit) && (Character.isLetterOrDigit(buffer.get(index)) || (buffer.get(index) == '_'))) {
+            
+            index++;
+            
+        }
+        
+        if (index == start) {
+            
+            return false;
+            
+        }
+        
+        index = skipWhitespace(buffer, index, limit);
+        
+        return (index < limit) && (buffer.get(index) == '"');
+    }
+    
+    // Reads the games that start in [start, end). The last of them may run past the end.
+    private void readRange(final FileChannel channel, final long start, final long end, final long size) throws IOException {
+        
+        long windowStart = start;
+        
+        while (windowStart < end) {
+            
+            final int windowSize = (int) Math.min(chunkBytes, size - windowStart);
+            
+            final boolean lastWindow = (windowStart + windowSize) == size;
+            
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowSize);
+            
+            int index = skipWhitespace(buffer, 0, windowSize);
+            
+            while ((index < windowSize) && ((windowStart + index) < end)) {
+                
+                final int gameEnd = readGame(buffer, index, windowSize, lastWindow);
+                
+                if (gameEnd < 0) {
+                    
+                    // The game runs past the window: map again from its first byte
+                    
+                    if (index == 0) {
+                        
+                        throw new IllegalArgumentException("PGN game at byte " + windowStart + " is longer than " + chunkBytes + " bytes");
+                        
+                    }
+                    
+                    break;
+                    
+                }
+                
+                index = skipWhitespace(buffer, gameEnd, windowSize);
+                
+            }
+            
+            if (lastWindow && (index >= windowSize)) {
+                
+                return;
+                
+            }
+            
+            windowStart += index;
+            
+        }
+        
+    }
+    
+    // Reads one game from its first byte. Returns the index after it, or -1 when the window ends first and
+    // more of the file follows.
+    private int readGame(final MappedByteBuffer buffer, final int start, final int limit, final boolean lastWindow) {
+        
+        tags.clear();
+        
+        movetextStarted = false;
+        
+        gameValid = true;
+        
+        gameResult = null;
+        
+        int index = start;
+        
+        while (true) {
+            
+            index = skipWhitespace(buffer, index, limit);
+            
+            if (index >= limit) {
+                
+                if (!lastWindow) {
+                    
+                    return -1;
+                    
+                }
+                
+                break;
+                
+            }
+            
+            final byte b = buffer.get(index);
+            
+            if (b == '[') {
+                
+                if (movetextStarted && (buffer.get(index - 1) == '\n')) {
+                    
+                    // Next game, this one had no result
+                    
+                    break;
+                    
+                }
+                
+                index = readTag(buffer, index + 1, limit);
+                
+            } else if (b == '{') {
+                
+                index = skipPast(buffer, index + 1, limit, (byte) '}');
+                
+            } else if ((b == ';') || ((b == '%') && ((index == 0) || (buffer.get(index - 1) == '\n')))) {
+                
+                index = skipPast(buffer, index + 1, limit, (byte) '\n');
+                
+            } else if (b == '(') {
+                
+                index = skipVariation(buffer, index + 1, limit);
+                
+            } else if ((b == '$') || (b == ')') || (b == '}') || (b == ']')) {
+                
+                index = skipToken(buffer, index + 1, limit);
+                
+            } else {
+                
+                final int tokenEnd = skipToken(buffer, index, limit);
+                
+                if ((tokenEnd >= limit) && !lastWindow) {
+                    
+                    return -1;
+                    
+                }
+                
+                readMovetextToken(buffer, index, tokenEnd);
+                
+                index = tokenEnd;
+                
+                if (gameResult != null) {
+                    
+                    break;
+                    
+                }
+                
+            }
+            
+            if (index < 0) {
+                
+                if (!lastWindow) {
+                    
+                    return -1;
+                    
+                }
+                
+                index = limit;
+                
+            }
+            
+        }
+        
+        finishGame();
+        
+        return index;
+    }
+    
+    private void readMovetextToken(final MappedByteBuffer buffer, final int start, final int end) {
+        
+        if (isResult(buffer, start, end, "1-0")) {
+            
+            gameResult = ChessGameRecord.Result.WHITE_WINS;
+            
+        } else if (isResult(buffer, start, end, "0-1")) {
+            
+            gameResult = ChessGameRecord.Result.BLACK_WINS;
+            
+        } else if (isResult(buffer, start, end, "1/2-1/2")) {
+            
+            gameResult = ChessGameRecord.Result.DRAW;
+            
+        } else if (isResult(buffer, start, end, "*")) {
+            
+            gameResult = ChessGameRecord.Result.UNKNOWN;
+            
+        } else {
+            
+            // Move numbers such as "12." or "12..." may run straight into the move
+            
+            int index = start;
+            
+            while ((index < end) && (buffer.get(index) >= '0') && (buffer.get(index) <= '9')) {
+                
+                index++;
+                
+            }
+            
+            if ((index < end) && (buffer.get(index) == '.')) {
+                
+                while ((index < end) && (buffer.get(index) == '.')) {
+                    
+                    index++;
+                    
+                }
+                
+            } else {
+                
+                index = start;
+                
+            }
+            
+            if (index < end) {
+                
+                readMove(buffer, index, end);
+                
+            }
+            
+        }
+        
+    }
+    
+    private void readMove(final MappedByteBuffer buffer, final int start, final int end) {
+        
+        if (!movetextStarted) {
+            
+            startMovetext();
+            
+        }
+        
+        if (gameValid) {
+            
+            final int move = resolveSan(buffer, start, end);
+            
+            if (move == ChessMove.NO_MOVE) {
+                
+                gameValid = false;
+                
+            } else {
+                
+                chessPosition.makeMove(move);
+                
+            }
+            
+        }
+        
+    }
+    
+    // Sets up the start position, from the FEN tag if the game has one
+    private void startMovetext() {
+        
+        movetextStarted = true;
+        
+        final String fen = tags.get("FEN");
+        
+        try {
+            
+            if (fen == null) {
+                
+                chessPosition.copyFrom(START_POSITION);
+                
+            } else {
+                
+                ChessFen.parse(fen, chessPosition);
+                
+            }
+            
+        } catch (final IllegalArgumentException illegalArgumentException) {
+            
+            gameValid = false;
+            
+        }
+        
+    }
+    
+    // The legal move the SAN describes, or ChessMove.NO_MOVE when there isn't exactly one.
+    private int resolveSan(final MappedByteBuffer buffer, final int start, int end) {
+        
+        // Check, mate and annotation marks
+        
+        while ((end > start) && isSanSuffix(buffer.get(end - 1))) {
+            
+            end--;
+            
+        }
+        
+        if (end <= start) {
+            
+            return ChessMove.NO_MOVE;
+            
+        }
+        
+        final int legalMoveCount = ChessMoveGenerator.generateLegalMoves(chessPosition, legalMoves, 0);
+        
+        final byte first = buffer.get(start);
+        
+        if ((first == 'O') || (first == '0')) {
+            
+            final int flags = ((end - start) >= 5) ? ChessMove.QUEEN_CASTLE : ChessMove.KING_CASTLE;
+            
+            for (int i = 0; i < legalMoveCount; i++) {
+                
+                if (ChessMove.getFlags(legalMoves[i]) == flags) {
+                    
+                    return legalMoves[i];
+                    
+                }
+                
+            }
+            
+            return ChessMove.NO_MOVE;
+            
+        }
+        
+        int index = start;
+        
+        int type = ChessPosition.PAWN;
+        
+        final int pieceType = pieceType(first);
+        
+        if (pieceType >= 0) {
+            
+            type = pieceType;
+            
+            index++;
+            
+        }
+        
+        // Promotion piece, with or without '='
+        
+        int promotionType = ChessPosition.NO_PIECE;
+        
+        if ((type == ChessPosition.PAWN) && ((end - index) >= 3) && (pieceType(buffer.get(end - 1)) > ChessPosition.PAWN)) {
+            
+            promotionType = pieceType(buffer.get(end - 1));
+            
+            end--;
+            
+            if (buffer.get(end - 1) == '=') {
+                
+                end--;
+                
+            }
+            
+        }
+        
+        if ((end - index) < 2) {
+            
+            return ChessMove.NO_MOVE;
+            
+        }
+        
+        final int destinationX = buffer.get(end - 2) - 'a';
+        final int destinationY = '8' - buffer.get(end - 1);
+        
+        if (((destinationX & ~7) != 0) || ((destinationY & ~7) != 0)) {
+            
+            return ChessMove.NO_MOVE;
+            
+        }
+        
+        // Whatever is left is disambiguation and capture marks
+        
+        int sourceX = -1;
+        int sourceY = -1;
+        
+        for (end -= 2; index < end; index++) {
+            
+            final byte b = buffer.get(index);
+            
+            if ((b >= 'a') && (b <= 'h')) {
+                
+                sourceX = b - 'a';
+                
+            } else if ((b >= '1') && (b <= '8')) {
+                
+                sourceY = '8' - b;
+                
+            } else if ((b != 'x') && (b != ':') && (b != '-')) {
+                
+                return ChessMove.NO_MOVE;
+                
+            }
+            
+        }
+        
+        final int destinationSquare = ChessPosition.square(destinationX, destinationY);
+        
+        int resolvedMove = ChessMove.NO_MOVE;
+        
+        for (int i = 0; i < legalMoveCount; i++) {
+            
+            final int move = legalMoves[i];
+            
+            final int sourceSquare = ChessMove.getSourceSquare(move);
+            
+            if ((ChessMove.getDestinationSquare(move) == destinationSquare)
+                    && (ChessPosition.pieceType(chessPosition.getPiece(sourceSquare)) == type)
+                    && ((sourceX < 0) || (ChessPosition.squareX(sourceSquare) == sourceX))
+                    && ((sourceY < 0) || (ChessPosition.squareY(sourceSquare) == sourceY))
+                    && (ChessMove.isPromotion(move) ? (ChessMove.getPromotionType(move) == promotionType) : (promotionType == ChessPosition.NO_PIECE))) {
+                
+                if (resolvedMove != ChessMove.NO_MOVE) {
+                    
+                    return ChessMove.NO_MOVE;
+                    
+                }
+                
+                resolvedMove = move;
+                
+            }
+            
+        }
+        
+        return resolvedMove;
+    }
+    
+    private void finishGame() {
+        
+        if (tags.isEmpty() && !movetextStarted) {
+            
+            return;
+            
+        }
+        
+        if (!movetextStarted) {
+            
+            // A game without moves still needs its start position
+            
+            startMovetext();
+            
+        }
+        
+        if (!gameValid) {
+            
+            skippedGames++;
+            
+            return;
+            
+        }
+        
+        ChessGameRecord.Result result = gameResult;
+        
+        if (result == null) {
+            
+            result = ChessGameRecord.Result.UNKNOWN;
+            
+            final String resultTag = tags.get("Result");
+            
+            for (final ChessGameRecord.Result tagResult : ChessGameRecord.Result.values()) {
+                
+                if (tagResult.getDisplayName().equals(resultTag)) {
+                    
+                    result = tagResult;
+                    
+                }
+                
+            }
+            
+        }
+        
+        games++;
+        
+        consumer.accept(new Game(Collections.unmodifiableMap(new LinkedHashMap<>(tags)),
+                ChessGameRecord.of(chessPosition, ChessGameRecord.DEFAULT_CHECKPOINT_INTERVAL, result)));
+        
+    }
+    
+    // Reads [Name "Value"] from after the bracket. Returns the index after the closing bracket, or -1.
+    private int readTag(final MappedByteBuffer buffer, final int start, final int limit) {
+        
+        int index = start;
+        
+        while ((index < limit) && !isWhitespace(buffer.get(index)) && (buffer.get(index) != '"') && (buffer.get(index) != ']')) {
+            
+            index++;
+            
+        }
+        
+        final String name = decode(buffer, start, index);
+        
+        index = skipWhitespace(buffer, index, limit);
+        
+        if ((index >= limit) || (buffer.get(index) != '"')) {
+            
+            return skipPast(buffer, index, limit, (byte) ']');
+            
+        }
+        
+        int length = 0;
+        
+        for (index++; (index < limit) && (buffer.get(index) != '"'); index++) {
+            
+            byte b = buffer.get(index);
+            
+            if ((b == '\\') && ((index + 1) < limit)) {
+                
+                b = buffer.get(++index);
+                
+            }
+            
+            if (length == text.length) {
+                
+                text = Arrays.copyOf(text, length * 2);
+                
+            }
+            
+            text[length++] = b;
+            
+        }
+        
+        if (index >= limit) {
+            
+            return -1;
+            
+        }
+        
+        tags.put(name, new String(text, 0, length, StandardCharsets.UTF_8));
+        
+        return skipPast(buffer, index + 1, limit, (byte) ']');
+    }
+    
+    private String decode(final MappedByteBuffer buffer, final int start, final int end) {
+        
+        if ((end - start) > text.length) {
+            
+            text = new byte[end - start];
+            
+        }
+        
+        buffer.get(start, text, 0, end - start);
+        
+        return new String(text, 0, end - start, StandardCharsets.UTF_8);
+    }
+    
+    // Skips a variation from after its opening parenthesis, including nested variations and comments.
+    private static int skipVariation(final MappedByteBuffer buffer, int index, final int limit) {
+        
+        int depth = 1;
+        
+        while (index < limit) {
+            
+            final byte b = buffer.get(index);
+            
+            if (b == '{') {
+                
+                index = skipPast(buffer, index + 1, limit, (byte) '}');
+                
+                if (index < 0) {
+                    
+                    return -1;
+                    
+                }
+                
+                continue;
+                
+            }
+            
+            index++;
+            
+            if (b == '(') {
+                
+                depth++;
+                
+            } else if ((b == ')') && (--depth == 0)) {
+                
+                return index;
+                
+            }
+            
+        }
+        
+        return -1;
+    }
+    
+    // Index after the next occurrence of the byte, or -1
+    private static int skipPast(final MappedByteBuffer buffer, int index, final int limit, final byte b) {
+        
+        while (index < limit) {
+            
+            if (buffer.get(index++) == b) {
+                
+                return index;
+                
+            }
+            
+        }
+        
+        return -1;
+    }
+    
+    private static int skipToken(final MappedByteBuffer buffer, int index, final int limit) {
+        
+        while ((index < limit) && !isDelimiter(buffer.get(index))) {
+            
+            index++;
+            
+        }
+        
+        return index;
+    }
+    
+    private static int skipWhitespace(final MappedByteBuffer buffer, int index, final int limit) {
+        
+        while ((index < limit) && isWhitespace(buffer.get(index))) {
+            
+            index++;
+            
+        }
+        
+        return index;
+    }
+    
+    private static boolean isResult(final MappedByteBuffer buffer, final int start, final int end, final String result) {
+        
+        if ((end - start) != result.length()) {
+            
+            return false;
+            
+        }
+        
+        for (int i = 0; i < result.length(); i++) {
+            
+            if (buffer.get(start + i) != result.charAt(i)) {
+                
+                return false;
+                
+            }
+            
+        }
+        
+        return true;
+    }
+    
+    private static int pieceType(final byte b) {
+        
+        return switch (b) {
+            
+            case 'N' -> ChessPosition.KNIGHT;
+            
+            case 'B' -> ChessPosition.BISHOP;
+            
+            case 'R' -> ChessPosition.ROOK;
+            
+            case 'Q' -> ChessPosition.QUEEN;
+            
+            case 'K' -> ChessPosition.KING;
+            
+            default -> -1;
+            
+        };
+    }
+    
+    private static boolean isSanSuffix(final byte b) {
+        
+        return (b == '+') || (b == '#') || (b == '!') || (b == '?');
+    }
+    
+    private static boolean isWhitespace(final byte b) {
+        
+        return (b == ' ') || (b == '\n') || (b == '\r') || (b == '\t');
+    }
+    
+    private static boolean isDelimiter(final byte b) {
+        
+        return isWhitespace(b) || (b == '{') || (b == '}') || (b == '(') || (b == ')') || (b == '[') || (b == ']') || (b == ';');
+    }
+    
+    // Places the second of two games so its first tag line straddles the end of the first split scan window,
+    // one shift at a time, and checks that the split lands on that tag line rather than inside the game
+    private static boolean checkSplitBoundary() throws IOException {
+        
+        final Path path = Files.createTempFile("split", ".pgn");
+        
+        final String firstTag = "[Event \"Second\"]";
+        
+        boolean passed = true;
+        
+        try {
+            
+            for (int shift = -2; shift <= firstTag.length() + 1; shift++) {
+                
+                final String head = "[Event \"First\"]\n\n1. e4 e5 {";
+                
+                final String tail = "} 1-0\n\n";
+                
+                final int gameStart = SPLIT_SCAN_BYTES - firstTag.length() + shift;
+                
+                final String pgn = head + " ".repeat(gameStart - head.length() - tail.length()) + tail + firstTag
+                        + "\n[Site \"?\"]\n\n1. d4 d5 0-1\n";
+                
+                Files.writeString(path, pgn, StandardCharsets.US_ASCII);
+                
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    
+                    final long split = findGameStart(channel, 1L, channel.size());
+                    
+                    System.out.println(((split == gameStart) ? "ok       " : "MISMATCH ") + "shift " + shift + ": " + split);
+                    
+                    passed &= split == gameStart;
+                    
+                }
+                
+            }
+            
+        } finally {
+            
+            Files.delete(path);
+            
+        }
+        
+        return passed;
+    }
+    
+    // Usage: ChessPgnReader <file> [threads], or ChessPgnReader --check-splits
+    public static void main(final String[] args) throws IOException {
+        
+        if (args.length < 1) {
+            
+            throw new IllegalArgumentException("usage: ChessPgnReader <file> [threads]");
+            
+        }
+        
+        if (args[0].equals("--check-splits")) {
+            
+            if (!checkSplitBoundary()) {
+                
+                System.exit(1);
+                
+            }
+            
+            return;
+            
+        }
+        
+        final Path path = Path.of(args[0]);
+        
+        final int threads = (args.length > 1) ? Integer.parseInt(args[1]) : 1;
+        
+        final Summary summary = (threads == 1)
+                ? read(path, game -> { })
+                : read(path, game -> { }, new ForkJoinPool(threads));
+        
+        System.out.println("File: " + path);
+        System.out.println("Threads: " + threads);
+        System.out.println(summary);
+        
+    }
+    
+}
\ No newline at end of file
@@ -1,6 +1,9 @@
 package game.chess;
 
 import game.GamePlayer;
+import game.chess.engine.ChessEngine;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
@@ -11,6 +14,9 @@ public final class ChessPlayer
     
     private final ObservableList<ChessPiece> capturedPieces = FXCollections.observableArrayList();
     
+    // Null while the player is controlled by a person
+    private final ObjectProperty<ChessEngine> chessEngineProperty = new SimpleObjectProperty<>(null);
+    
     ChessPlayer(final boolean playerOne) {
         
         this.playerOne = playerOne;
@@ -27,4 +33,20 @@ public final class ChessPlayer
         return capturedPieces;
     }
     
+    public ObjectProperty<ChessEngine> chessEngineProperty() {
+        
+        return chessEngineProperty;
+    }
+    
+    public ChessEngine getChessEngine() {
+        
+        return chessEngineProperty.get();
+    }
+    
+    public void setChessEngine(final ChessEngine chessEngine) {
+        
+        chessEngineProperty.set(chessEngine);
+        
+    }
+    
 }
\ No newline at end of file
@@ -0,0 +1,755 @@
+package game.chess;
+
+import java.util.Arrays;
+
+public final class ChessPosition {
+    
+    // Colors (player one moves first and plays from the bottom of the board):
+    
+    public static final int WHITE = 0;
+    
+    public static final int BLACK = 1;
+    
+    // Piece types:
+    
+    public static final int PAWN = 0;
+    
+    public static final int KNIGHT = 1;
+    
+    public static final int BISHOP = 2;
+    
+    public static final int ROOK = 3;
+    
+    public static final int QUEEN = 4;
+    
+    public static final int KING = 5;
+    
+    public static final int PIECE_TYPE_COUNT = 6;
+    
+    public static final int PIECE_COUNT = 2 * PIECE_TYPE_COUNT;
+    
+    public static final int NO_PIECE = -1;
+    
+    public static final int SQUARE_COUNT = 64;
+    
+    public static final int NO_SQUARE = -1;
+    
+    // Castling rights:
+    
+    public static final int WHITE_KING_SIDE = 1;
+    
+    public static final int WHITE_QUEEN_SIDE = 2;
+    
+    public static final int BLACK_KING_SIDE = 4;
+    
+    public static final int BLACK_QUEEN_SIDE = 8;
+    
+    public static final int ALL_CASTLING_RIGHTS = 15;
+    
+    // Squares are numbered row by row from the top left tile, so square = (y * 8) + x
+    // matches the coordinates of ChessBoard.getChessTile(x, y).
+    
+    final long[] pieceBitboards = new long[PIECE_COUNT];
+    
+    final long[] colorBitboards = new long[2];
+    
+    long occupancy;
+    
+    final byte[] mailbox = new byte[SQUARE_COUNT];
+    
+    int sideToMove = WHITE;
+    
+    int castlingRights;
+    
+    // Only set when a pawn of the side to move could capture en passant
+    int enPassantSquare = NO_SQUARE;
+    
+    int halfmoveClock;
+    
+    int fullmoveNumber = 1;
+    
+    // Zobrist key, kept up to date by every mutation below
+    long zobristKey;
+    
+    // Zobrist key of the pawns alone, for caching pawn structure evaluation
+    long pawnKey;
+    
+    // Piece-square scores from white's point of view and the game phase, updated with the pieces
+    
+    int middlegameScore;
+    
+    int endgameScore;
+    
+    int phase;
+    
+    // Undo stack, one entry per move made: the move, the packed irreversible state before it
+    // (see packUndoState) and the Zobrist key before it. Grown by doubling, so making and
+    // unmaking moves allocates nothing once the stack is deep enough.
+    
+    private static final int INITIAL_UNDO_CAPACITY = 256;
+    
+    private int[] undoMoves = new int[INITIAL_UNDO_CAPACITY];
+    
+    private int[] undoStates = new int[INITIAL_UNDO_CAPACITY];
+    
+    private long[] undoKeys = new long[INITIAL_UNDO_CAPACITY];
+    
+    private int undoCount;
+    
+    // Squares of the same color as the top left tile
+    private static final long LIGHT_SQUARES = 0xAA55AA55AA55AA55L;
+    
+    // Castling rights kept when a piece leaves or lands on each square
+    private static final int[] CASTLING_RIGHTS_MASKS = new int[SQUARE_COUNT];
+    
+    static {
+        
+        Arrays.fill(CASTLING_RIGHTS_MASKS, ALL_CASTLING_RIGHTS);
+        
+        CASTLING_RIGHTS_MASKS[square(4, 7)] &= ~(WHITE_KING_SIDE | WHITE_QUEEN_SIDE);
+        CASTLING_RIGHTS_MASKS[square(7, 7)] &= ~WHITE_KING_SIDE;
+        CASTLING_RIGHTS_MASKS[square(0, 7)] &= ~WHITE_QUEEN_SIDE;
+        
+        CASTLING_RIGHTS_MASKS[square(4, 0)] &= ~(BLACK_KING_SIDE | BLACK_QUEEN_SIDE);
+        CASTLING_RIGHTS_MASKS[square(7, 0)] &= ~BLACK_KING_SIDE;
+        CASTLING_RIGHTS_MASKS[square(0, 0)] &= ~BLACK_QUEEN_SIDE;
+        
+    }
+    
+    public ChessPosition() {
+        
+        Arrays.fill(mailbox, (byte) NO_PIECE);
+        
+    }
+    
+    public ChessPosition(final ChessPosition chessPosition) {
+        
+        copyFrom(chessPosition);
+        
+    }
+    
+    public static ChessPosition startPosition() {
+        
+        final var chessPosition = new ChessPosition();
+        
+        final int[] backRank = {ROOK, KNIGHT, BISHOP, QUEEN, KING, BISHOP, KNIGHT, ROOK};
+        
+        for (int x = 0; x < 8; x++) {
+            
+            chessPosition.setPiece(square(x, 0), piece(BLACK, backRank[x]));
+            chessPosition.setPiece(square(x, 1), piece(BLACK, PAWN));
+            
+            chessPosition.setPiece(square(x, 6), piece(WHITE, PAWN));
+            chessPosition.setPiece(square(x, 7), piece(WHITE, backRank[x]));
+            
+        }
+        
+        chessPosition.setCastlingRights(ALL_CASTLING_RIGHTS);
+        
+        return chessPosition;
+    }
+    
+    public static int square(final int x, final int y) {
+        
+        return (y << 3) | x;
+    }
+    
+    public static int squareX(final int square) {
+        
+        return square & 7;
+    }
+    
+    public static int squareY(final int square) {
+        
+        return square >>> 3;
+    }
+    
+    public static int piece(final int color, final int type) {
+        
+        return (color * PIECE_TYPE_COUNT) + type;
+    }
+    
+    public static int pieceColor(final int piece) {
+        
+        return (piece < PIECE_TYPE_COUNT) ? WHITE : BLACK;
+    }
+    
+    public static int pieceType(final int piece) {
+        
+        return (piece < PIECE_TYPE_COUNT) ? piece : (piece - PIECE_TYPE_COUNT);
+    }
+    
+    public void clear() {
+        
+        Arrays.fill(pieceBitboards, 0L);
+        Arrays.fill(colorBitboards, 0L);
+        Arrays.fill(mailbox, (byte) NO_PIECE);
+        
+        occupancy = 0L;
+        
+        sideToMove = WHITE;
+        
+        castlingRights = 0;
+        
+        enPassantSquare = NO_SQUARE;
+        
+        halfmoveClock = 0;
+        
+        fullmoveNumber = 1;
+        
+        zobristKey = 0L;
+        
+        pawnKey = 0L;
+        
+        middlegameScore = 0;
+        
+        endgameScore = 0;
+        
+        phase = 0;
+        
+        undoCount = 0;
+        
+    }
+    
+    public void copyFrom(final ChessPosition chessPosition) {
+        
+        System.arraycopy(chessPosition.pieceBitboards, 0, pieceBitboards, 0, PIECE_COUNT);
+        System.arraycopy(chessPosition.colorBitboards, 0, colorBitboards, 0, 2);
+        System.arraycopy(chessPosition.mailbox, 0, mailbox, 0, SQUARE_COUNT);
+        
+        occupancy = chessPosition.occupancy;
+        
+        sideToMove = chessPosition.sideToMove;
+        
+        castlingRights = chessPosition.castlingRights;
+        
+        enPassantSquare = chessPosition.enPassantSquare;
+        
+        halfmoveClock = chessPosition.halfmoveClock;
+        
+        fullmoveNumber = chessPosition.fullmoveNumber;
+        
+        zobristKey = chessPosition.zobristKey;
+        
+        pawnKey = chessPosition.pawnKey;
+        
+        middlegameScore = chessPosition.middlegameScore;
+        
+        endgameScore = chessPosition.endgameScore;
+        
+        phase = chessPosition.phase;
+        
+        // The move history comes along, so the copy can unmake moves and detect repetitions
+        
+        ensureUndoCapacity(chessPosition.undoCount);
+        
+        System.arraycopy(chessPosition.undoMoves, 0, undoMoves, 0, chessPosition.undoCount);
+        System.arraycopy(chessPosition.undoStates, 0, undoStates, 0, chessPosition.undoCount);
+        System.arraycopy(chessPosition.undoKeys, 0, undoKeys, 0, chessPosition.undoCount);
+        
+        undoCount = chessPosition.undoCount;
+        
+    }
+    
+    public int getPiece(final int square) {
+        
+        return mailbox[square];
+    }
+    
+    public long getPieceBitboard(final int piece) {
+        
+        return pieceBitboards[piece];
+    }
+    
+    public long getColorBitboard(final int color) {
+        
+        return colorBitboards[color];
+    }
+    
+    public long getOccupancy() {
+        
+        return occupancy;
+    }
+    
+    public int getSideToMove() {
+        
+        return sideToMove;
+    }
+    
+    public void setSideToMove(final int sideToMove) {
+        
+        if (this.sideToMove != sideToMove) {
+            
+            zobristKey ^= ChessZobrist.sideKey();
+            
+        }
+        
+        this.sideToMove = sideToMove;
+        
+    }
+    
+    public int getCastlingRights() {
+        
+        return castlingRights;
+    }
+    
+    public void setCastlingRights(final int castlingRights) {
+        
+        zobristKey ^= ChessZobrist.castlingKey(this.castlingRights) ^ ChessZobrist.castlingKey(castlingRights);
+        
+        this.castlingRights = castlingRights;
+        
+    }
+    
+    public int getEnPassantSquare() {
+        
+        return enPassantSquare;
+    }
+    
+    public void setEnPassantSquare(final int enPassantSquare) {
+        
+        zobristKey ^= ChessZobrist.enPassantKey(this.enPassantSquare) ^ ChessZobrist.enPassantKey(enPassantSquare);
+        
+        this.enPassantSquare = enPassantSquare;
+        
+    }
+    
+    public int getHalfmoveClock() {
+        
+        return halfmoveClock;
+    }
+    
+    public void setHalfmoveClock(final int halfmoveClock) {
+        
+        this.halfmoveClock = halfmoveClock;
+        
+    }
+    
+    public int getFullmoveNumber() {
+        
+        return fullmoveNumber;
+    }
+    
+    public void setFullmoveNumber(final int fullmoveNumber) {
+        
+        this.fullmoveNumber = fullmoveNumber;
+        
+    }
+    
+    public long getZobristKey() {
+        
+        return zobristKey;
+    }
+    
+    public long getPawnKey() {
+        
+        return pawnKey;
+    }
+    
+    public int getMiddlegameScore() {
+        
+        return middlegameScore;
+    }
+    
+    public int getEndgameScore() {
+        
+        return endgameScore;
+    }
+    
+    // Sum of the phase weights of the pieces on the board, ChessPieceSquareTables.MAX_PHASE at the start
+    public int getPhase() {
+        
+        return phase;
+    }
+    
+    public int getKingSquare(final int color) {
+        
+        return Long.numberOfTrailingZeros(pieceBitboards[piece(color, KING)]);
+    }
+    
+    // Every piece of either color attacking the square, given the occupancy
+    public long attackersTo(final int square, final long occupancy) {
+        
+        final long rooksQueens = pieceBitboards[ROOK] | pieceBitboards[QUEEN]
+                | pieceBitboards[ROOK + PIECE_TYPE_COUNT] | pieceBitboards[QUEEN + PIECE_TYPE_COUNT];
+        
+        final long bishopsQueens = pieceBitboards[BISHOP] | pieceBitboards[QUEEN]
+                | pieceBitboards[BISHOP + PIECE_TYPE_COUNT] | pieceBitboards[QUEEN + PIECE_TYPE_COUNT];
+        
+        return (ChessAttacks.pawnAttacks(BLACK, square) & pieceBitboards[PAWN])
+                | (ChessAttacks.pawnAttacks(WHITE, square) & pieceBitboards[PAWN + PIECE_TYPE_COUNT])
+                | (ChessAttacks.knightAttacks(square) & (pieceBitboards[KNIGHT] | pieceBitboards[KNIGHT + PIECE_TYPE_COUNT]))
+                | (ChessAttacks.kingAttacks(square) & (pieceBitboards[KING] | pieceBitboards[KING + PIECE_TYPE_COUNT]))
+                | (ChessAttacks.rookAttacks(square, occupancy) & rooksQueens)
+                | (ChessAttacks.bishopAttacks(square, occupancy) & bishopsQueens);
+    }
+    
+    public boolean isSquareAttacked(final int square, final int attackerColor, final long occupancy) {
+        
+        final int offset = attackerColor * PIECE_TYPE_COUNT;
+        
+        return ((ChessAttacks.pawnAttacks(attackerColor ^ 1, square) & pieceBitboards[offset + PAWN]) != 0L)
+                || ((ChessAttacks.knightAttacks(square) & pieceBitboards[offset + KNIGHT]) != 0L)
+                || ((ChessAttacks.kingAttacks(square) & pieceBitboards[offset + KING]) != 0L)
+                || ((ChessAttacks.rookAttacks(square, occupancy)
+                        & (pieceBitboards[offset + ROOK] | pieceBitboards[offset + QUEEN])) != 0L)
+                || ((ChessAttacks.bishopAttacks(square, occupancy)
+                        & (pieceBitboards[offset + BISHOP] | pieceBitboards[offset + QUEEN])) != 0L);
+    }
+    
+    public boolean isSquareAttacked(final int square, final int attackerColor) {
+        
+        return isSquareAttacked(square, attackerColor, occupancy);
+    }
+    
+    public boolean isInCheck() {
+        
+        return isSquareAttacked(getKingSquare(sideToMove), sideToMove ^ 1);
+    }
+    
+    public void setPiece(final int square, final int piece) {
+        
+        removePiece(square);
+        
+        if (piece != NO_PIECE) {
+            
+            final long bit = 1L << square;
+            
+            pieceBitboards[piece] |= bit;
+            colorBitboards[pieceColor(piece)] |= bit;
+            
+            occupancy |= bit;
+            
+            mailbox[square] = (byte) piece;
+            
+            zobristKey ^= ChessZobrist.pieceKey(piece, square);
+            
+            if (pieceType(piece) == PAWN) {
+                
+                pawnKey ^= ChessZobrist.pieceKey(piece, square);
+                
+            }
+            
+            middlegameScore += ChessPieceSquareTables.middlegameValue(piece, square);
+            
+            endgameScore += ChessPieceSquareTables.endgameValue(piece, square);
+            
+            phase += ChessPieceSquareTables.phaseWeight(piece);
+            
+        }
+        
+    }
+    
+    public void removePiece(final int square) {
+        
+        final int piece = mailbox[square];
+        
+        if (piece != NO_PIECE) {
+            
+            final long mask = ~(1L << square);
+            
+            pieceBitboards[piece] &= mask;
+            colorBitboards[pieceColor(piece)] &= mask;
+            
+            occupancy &= mask;
+            
+            mailbox[square] = (byte) NO_PIECE;
+            
+            zobristKey ^= ChessZobrist.pieceKey(piece, square);
+            
+            if (pieceType(piece) == PAWN) {
+                
+                pawnKey ^= ChessZobrist.pieceKey(piece, square);
+                
+            }
+            
+            middlegameScore -= ChessPieceSquareTables.middlegameValue(piece, square);
+            
+            endgameScore -= ChessPieceSquareTables.endgameValue(piece, square);
+            
+            phase -= ChessPieceSquareTables.phaseWeight(piece);
+            
+        }
+        
+    }
+    
+    // Moves the piece on the source square, capturing whatever occupies the destination square,
+    // and hands the turn to the other side.
+    public void movePiece(final int sourceSquare, final int destinationSquare) {
+        
+        makeMove(encodeMove(sourceSquare, destinationSquare));
+        
+    }
+    
+    // Packs a source and destination square into a move with the flags this position implies
+    // (pawns reaching the last row promote to a queen).
+    public int encodeMove(final int sourceSquare, final int destinationSquare) {
+        
+        final int pieceType = pieceType(mailbox[sourceSquare]);
+        
+        int flags = (mailbox[destinationSquare] != NO_PIECE) ? ChessMove.CAPTURE : ChessMove.QUIET;
+        
+        if (pieceType == PAWN) {
+            
+            if (Math.abs(destinationSquare - sourceSquare) == 16) {
+                
+                flags = ChessMove.DOUBLE_PAWN_PUSH;
+                
+            } else if (destinationSquare == enPassantSquare) {
+                
+                flags = ChessMove.EN_PASSANT;
+                
+            } else if ((squareY(destinationSquare) == 0) || (squareY(destinationSquare) == 7)) {
+                
+                flags |= ChessMove.QUEEN_PROMOTION;
+                
+            }
+            
+        } else if ((pieceType == KING) && (Math.abs(destinationSquare - sourceSquare) == 2)) {
+            
+            flags = (destinationSquare > sourceSquare) ? ChessMove.KING_CASTLE : ChessMove.QUEEN_CASTLE;
+            
+        }
+        
+        return ChessMove.of(sourceSquare, destinationSquare, flags);
+    }
+    
+    // Plays a move produced by ChessMoveGenerator (the move is not validated). The move can be
+    // taken back with unmakeMove.
+    public void makeMove(final int move) {
+        
+        final int sourceSquare = ChessMove.getSourceSquare(move);
+        final int destinationSquare = ChessMove.getDestinationSquare(move);
+        
+        final int flags = ChessMove.getFlags(move);
+        
+        final int us = sideToMove;
+        final int them = us ^ 1;
+        
+        final int piece = mailbox[sourceSquare];
+        
+        final int capturedPiece = (flags == ChessMove.EN_PASSANT) ? piece(them, PAWN) : mailbox[destinationSquare];
+        
+        if (undoCount == undoMoves.length) {
+            
+            ensureUndoCapacity(undoCount * 2);
+            
+        }
+        
+        undoMoves[undoCount] = move;
+        undoStates[undoCount] = packUndoState(capturedPiece, castlingRights, enPassantSquare, halfmoveClock);
+        undoKeys[undoCount] = zobristKey;
+        
+        undoCount++;
+        
+        halfmoveClock++;
+        
+        if ((pieceType(piece) == PAWN) || (mailbox[destinationSquare] != NO_PIECE)) {
+            
+            halfmoveClock = 0;
+            
+        }
+        
+        if (flags == ChessMove.EN_PASSANT) {
+            
+            removePiece(destinationSquare + ((us == WHITE) ? 8 : -8));
+            
+        }
+        
+        removePiece(sourceSquare);
+        
+        setPiece(destinationSquare, ((flags & ChessMove.PROMOTION) != 0) ? piece(us, ChessMove.getPromotionType(move)) : piece);
+        
+        if (flags == ChessMove.KING_CASTLE) {
+            
+            removePiece(destinationSquare + 1);
+            
+            setPiece(destinationSquare - 1, piece(us, ROOK));
+            
+        } else if (flags == ChessMove.QUEEN_CASTLE) {
+            
+            removePiece(destinationSquare - 2);
+            
+            setPiece(destinationSquare + 1, piece(us, ROOK));
+            
+        }
+        
+        final int newCastlingRights = castlingRights & CASTLING_RIGHTS_MASKS[sourceSquare] & CASTLING_RIGHTS_MASKS[destinationSquare];
+        
+        zobristKey ^= ChessZobrist.castlingKey(castlingRights) ^ ChessZobrist.castlingKey(newCastlingRights)
+                ^ ChessZobrist.enPassantKey(enPassantSquare) ^ ChessZobrist.sideKey();
+        
+        castlingRights = newCastlingRights;
+        
+        enPassantSquare = NO_SQUARE;
+        
+        if (flags == ChessMove.DOUBLE_PAWN_PUSH) {
+            
+            final int passedSquare = (sourceSquare + destinationSquare) >>> 1;
+            
+            if ((ChessAttacks.pawnAttacks(us, passedSquare) & pieceBitboards[piece(them, PAWN)]) != 0L) {
+                
+                enPassantSquare = passedSquare;
+                
+                zobristKey ^= ChessZobrist.enPassantKey(passedSquare);
+                
+            }
+            
+        }
+        
+        if (us == BLACK) {
+            
+            fullmoveNumber++;
+            
+        }
+        
+        sideToMove = them;
+        
+    }
+    
+    // Takes back the last move played with makeMove.
+    public void unmakeMove() {
+        
+        if (undoCount == 0) {
+            
+            throw new IllegalStateException("no move to unmake");
+            
+        }
+        
+        undoCount--;
+        
+        final int move = undoMoves[undoCount];
+        final int undoState = undoStates[undoCount];
+        
+        final int sourceSquare = ChessMove.getSourceSquare(move);
+        final int destinationSquare = ChessMove.getDestinationSquare(move);
+        
+        final int flags = ChessMove.getFlags(move);
+        
+        final int us = sideToMove ^ 1;
+        
+        final int piece = ((flags & ChessMove.PROMOTION) != 0) ? piece(us, PAWN) : mailbox[destinationSquare];
+        
+        if (flags == ChessMove.KING_CASTLE) {
+            
+            removePiece(destinationSquare - 1);
+            
+            setPiece(destinationSquare + 1, piece(us, ROOK));
+            
+        } else if (flags == ChessMove.QUEEN_CASTLE) {
+            
+            removePiece(destinationSquare + 1);
+            
+            setPiece(destinationSquare - 2, piece(us, ROOK));
+            
+        }
+        
+        removePiece(destinationSquare);
+        
+        setPiece(sourceSquare, piece);
+        
+        final int capturedPiece = (undoState & 0xF) - 1;
+        
+        if (capturedPiece != NO_PIECE) {
+            
+            setPiece((flags == ChessMove.EN_PASSANT) ? (destinationSquare + ((us == WHITE) ? 8 : -8)) : destinationSquare, capturedPiece);
+            
+        }
+        
+        castlingRights = (undoState >>> 4) & 0xF;
+        
+        enPassantSquare = ((undoState >>> 8) & 0x7F) - 1;
+        
+        halfmoveClock = undoState >>> 15;
+        
+        if (us == BLACK) {
+            
+            fullmoveNumber--;
+            
+        }
+        
+        sideToMove = us;
+        
+        // Pieces were put back through setPiece and removePiece, which already restored the
+        // piece-square scores and the pawn key; the full key also covers castling, en passant and side
+        
+        zobristKey = undoKeys[undoCount];
+        
+    }
+    
+    // Number of moves that can be taken back with unmakeMove
+    public int getMoveCount() {
+        
+        return undoCount;
+    }
+    
+    // The last move played, or ChessMove.NO_MOVE
+    public int getLastMove() {
+        
+        return (undoCount == 0) ? ChessMove.NO_MOVE : undoMoves[undoCount - 1];
+    }
+    
+    // How many earlier positions in the move history are identical to this one. Only positions
+    // since the last capture or pawn move can repeat, and only those with the same side to move.
+    public int getRepetitionCount() {
+        
+        int repetitions = 0;
+        
+        final int oldest = Math.max(0, undoCount - halfmoveClock);
+        
+        for (int i = undoCount - 2; i >= oldest; i -= 2) {
+            
+            if (undoKeys[i] == zobristKey) {
+                
+                repetitions++;
+                
+            }
+            
+        }
+        
+        return repetitions;
+    }
+    
+    // Neither side can mate with any series of legal moves: bare kings, a single minor piece, or
+    // bishops that all stand on squares of one color.
+    public boolean hasInsufficientMaterial() {
+        
+        final int black = PIECE_TYPE_COUNT;
+        
+        if ((pieceBitboards[PAWN] | pieceBitboards[ROOK] | pieceBitboards[QUEEN]
+                | pieceBitboards[black + PAWN] | pieceBitboards[black + ROOK] | pieceBitboards[black + QUEEN]) != 0L) {
+            
+            return false;
+            
+        }
+        
+        final long knights = pieceBitboards[KNIGHT] | pieceBitboards[black + KNIGHT];
+        
+        final long bishops = pieceBitboards[BISHOP] | pieceBitboards[black + BISHOP];
+        
+        return (Long.bitCount(knights | bishops) <= 1)
+                || ((knights == 0L) && (((bishops & LIGHT_SQUARES) == 0L) || ((bishops & ~LIGHT_SQUARES) == 0L)));
+    }
+    
+    // Captured piece + 1 (4 bits), castling rights (4), en passant square + 1 (7), halfmove clock (17)
+    private static int packUndoState(final int capturedPiece, final int castlingRights, final int enPassantSquare,
+            final int halfmoveClock) {
+        
+        return (capturedPiece + 1) | (castlingRights << 4) | ((enPassantSquare + 1) << 8) | (Math.min(halfmoveClock, 0x1FFFF) << 15);
+    }
+    
+    private void ensureUndoCapacity(final int capacity) {
+        
+        if (capacity > undoMoves.length) {
+            
+            final int newCapacity = Math.max(capacity, undoMoves.length * 2);
+            
+            undoMoves = Arrays.copyOf(undoMoves, newCapacity);
+            undoStates = Arrays.copyOf(undoStates, newCapacity);
+            undoKeys = Arrays.copyOf(undoKeys, newCapacity);
+            
+        }
+        
+    }
+    
+}
\ No newline at end of file
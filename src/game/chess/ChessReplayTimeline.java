@@ -0,0 +1,169 @@
+package game.chess;
+
+public final class ChessReplayTimeline {
+    
+    // Random access to every ply of a recorded game, for scrubbing through long games. A full position,
+    // move history included, is kept every keyframe interval plies, and the moves in between are the
+    // deltas: seeking copies the keyframe at or before the ply and makes fewer than interval moves on it.
+    // A 500-ply game with the default interval holds 32 keyframes.
+    
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 16;
+    
+    private final int keyframeInterval;
+    
+    private final int[] moves;
+    
+    // Piece each ply captured, or ChessPosition.NO_PIECE
+    private final byte[] capturedPieces;
+    
+    // Positions after 0, interval, 2 * interval, ... plies
+    private final ChessPosition[] keyframes;
+    
+    private ChessReplayTimeline(final int keyframeInterval, final int[] moves, final byte[] capturedPieces,
+            final ChessPosition[] keyframes) {
+        
+        this.keyframeInterval = keyframeInterval;
+        
+        this.moves = moves;
+        
+        this.capturedPieces = capturedPieces;
+        
+        this.keyframes = keyframes;
+        
+    }
+    
+    // Replays the record once, checking every move against the legal moves of its position
+    public static ChessReplayTimeline of(final ChessGameRecord chessGameRecord, final int keyframeInterval) {
+        
+        if (keyframeInterval < 1) {
+            
+            throw new IllegalArgumentException("keyframe interval must be at least 1");
+            
+        }
+        
+        final int plyCount = chessGameRecord.getPlyCount();
+        
+        final var moves = new int[plyCount];
+        
+        final var capturedPieces = new byte[plyCount];
+        
+        final var keyframes = new ChessPosition[(plyCount / keyframeInterval) + 1];
+        
+        final var chessPosition = new ChessPosition();
+        
+        chessGameRecord.setUpStartPosition(chessPosition);
+        
+        final var legalMoves = new int[ChessMove.MAX_MOVES];
+        
+        for (int ply = 0; ply <= plyCount; ply++) {
+            
+            if ((ply % keyframeInterval) == 0) {
+                
+                keyframes[ply / keyframeInterval] = new ChessPosition(chessPosition);
+                
+            }
+            
+            if (ply == plyCount) {
+                
+                break;
+                
+            }
+            
+            final int move = chessGameRecord.getMove(ply);
+            
+            if (!isLegal(chessPosition, move, legalMoves)) {
+                
+                throw new IllegalArgumentException("illegal move " + ChessMove.toString(move) + " at ply " + ply);
+                
+            }
+            
+            final int flags = ChessMove.getFlags(move);
+            
+            capturedPieces[ply] = (byte) ((flags == ChessMove.EN_PASSANT)
+                    ? ChessPosition.piece(chessPosition.getSideToMove() ^ 1, ChessPosition.PAWN)
+                    : ChessMove.isCapture(move) ? chessPosition.getPiece(ChessMove.getDestinationSquare(move)) : ChessPosition.NO_PIECE);
+            
+            moves[ply] = move;
+            
+            chessPosition.makeMove(move);
+            
+        }
+        
+        return new ChessReplayTimeline(keyframeInterval, moves, capturedPieces, keyframes);
+    }
+    
+    public static ChessReplayTimeline of(final ChessGameRecord chessGameRecord) {
+        
+        return of(chessGameRecord, DEFAULT_KEYFRAME_INTERVAL);
+    }
+    
+    public int getPlyCount() {
+        
+        return moves.length;
+    }
+    
+    public int getKeyframeInterval() {
+        
+        return keyframeInterval;
+    }
+    
+    // Move played at the ply, counting from 0
+    public int getMove(final int ply) {
+        
+        return moves[ply];
+    }
+    
+    public int getCapturedPiece(final int ply) {
+        
+        return capturedPieces[ply];
+    }
+    
+    // Sets the position up as it stood after the given number of plies, with the history of the moves
+    // that led there
+    public void seek(final int ply, final ChessPosition chessPosition) {
+        
+        if ((ply < 0) || (ply > moves.length)) {
+            
+            throw new IllegalArgumentException("ply must be between 0 and " + moves.length);
+            
+        }
+        
+        final int keyframe = ply / keyframeInterval;
+        
+        chessPosition.copyFrom(keyframes[keyframe]);
+        
+        for (int i = keyframe * keyframeInterval; i < ply; i++) {
+            
+            chessPosition.makeMove(moves[i]);
+            
+        }
+        
+    }
+    
+    public ChessPosition seek(final int ply) {
+        
+        final var chessPosition = new ChessPosition();
+        
+        seek(ply, chessPosition);
+        
+        return chessPosition;
+    }
+    
+    private static boolean isLegal(final ChessPosition chessPosition, final int move, final int[] legalMoves) {
+        
+        final int legalMoveCount = ChessMoveGenerator.generateLegalMoves(chessPosition, legalMoves, 0);
+        
+        for (int i = 0; i < legalMoveCount; i++) {
+            
+            if (legalMoves[i] == move) {
+                
+                return true;
+                
+            }
+            
+        }
+        
+        return false;
+    }
+    
+}
\ No newline at end of file
@@ -82,6 +82,11 @@ public final class ChessTile
         return y;
     }
     
+    public int getSquare() {
+        
+        return ChessPosition.square(x, y);
+    }
+    
     public ReadOnlyObjectProperty<ChessPiece> chessPieceProperty() {
         
         return chessPieceProperty.getReadOnlyProperty();
@@ -0,0 +1,135 @@
+package game.chess;
+
+import java.util.SplittableRandom;
+
+public final class ChessZobrist {
+    
+    // Fixed seed so that keys stay comparable across runs (caches, game records, books)
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+    
+    private static final long[][] PIECE_SQUARE_KEYS = new long[ChessPosition.PIECE_COUNT][ChessPosition.SQUARE_COUNT];
+    
+    private static final long[] CASTLING_KEYS = new long[ChessPosition.ALL_CASTLING_RIGHTS + 1];
+    
+    private static final long[] EN_PASSANT_KEYS = new long[8];
+    
+    private static final long SIDE_KEY;
+    
+    static {
+        
+        final var random = new SplittableRandom(SEED);
+        
+        for (final long[] squareKeys : PIECE_SQUARE_KEYS) {
+            
+            for (int square = 0; square < ChessPosition.SQUARE_COUNT; square++) {
+                
+                squareKeys[square] = random.nextLong();
+                
+            }
+            
+        }
+        
+        // One key per right, combined so that any set of rights costs a single XOR
+        
+        final long[] rightKeys = {random.nextLong(), random.nextLong(), random.nextLong(), random.nextLong()};
+        
+        for (int castlingRights = 0; castlingRights < CASTLING_KEYS.length; castlingRights++) {
+            
+            for (int right = 0; right < 4; right++) {
+                
+                if ((castlingRights & (1 << right)) != 0) {
+                    
+                    CASTLING_KEYS[castlingRights] ^= rightKeys[right];
+                    
+                }
+                
+            }
+            
+        }
+        
+        for (int x = 0; x < 8; x++) {
+            
+            EN_PASSANT_KEYS[x] = random.nextLong();
+            
+        }
+        
+        SIDE_KEY = random.nextLong();
+        
+    }
+    
+    private ChessZobrist() {
+        
+        super();
+        
+    }
+    
+    public static long pieceKey(final int piece, final int square) {
+        
+        return PIECE_SQUARE_KEYS[piece][square];
+    }
+    
+    public static long castlingKey(final int castlingRights) {
+        
+        return CASTLING_KEYS[castlingRights];
+    }
+    
+    public static long enPassantKey(final int enPassantSquare) {
+        
+        return (enPassantSquare == ChessPosition.NO_SQUARE) ? 0L : EN_PASSANT_KEYS[ChessPosition.squareX(enPassantSquare)];
+    }
+    
+    public static long sideKey() {
+        
+        return SIDE_KEY;
+    }
+    
+    // Full recomputation, for positions built square by square and for verifying the incremental key.
+    public static long computeKey(final ChessPosition chessPosition) {
+        
+        long key = 0L;
+        
+        for (int square = 0; square < ChessPosition.SQUARE_COUNT; square++) {
+            
+            final int piece = chessPosition.getPiece(square);
+            
+            if (piece != ChessPosition.NO_PIECE) {
+                
+                key ^= PIECE_SQUARE_KEYS[piece][square];
+                
+            }
+            
+        }
+        
+        key ^= CASTLING_KEYS[chessPosition.getCastlingRights()];
+        
+        key ^= enPassantKey(chessPosition.getEnPassantSquare());
+        
+        if (chessPosition.getSideToMove() == ChessPosition.BLACK) {
+            
+            key ^= SIDE_KEY;
+            
+        }
+        
+        return key;
+    }
+    
+    public static long computePawnKey(final ChessPosition chessPosition) {
+        
+        long key = 0L;
+        
+        for (int color = ChessPosition.WHITE; color <= ChessPosition.BLACK; color++) {
+            
+            final int pawn = ChessPosition.piece(color, ChessPosition.PAWN);
+            
+            for (long pawns = chessPosition.getPieceBitboard(pawn); pawns != 0L; pawns &= pawns - 1) {
+                
+                key ^= PIECE_SQUARE_KEYS[pawn][Long.numberOfTrailingZeros(pawns)];
+                
+            }
+            
+        }
+        
+        return key;
+    }
+    
+}
\ No newline at end of file
@@ -0,0 +1,542 @@
+package game.chess.engine;
+
+import game.chess.ChessMove;
+import game.chess.ChessMoveGenerator;
+import game.chess.ChessPosition;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+public final class ChessEngine {
+    
+    public static final int DEFAULT_MAX_DEPTH = ChessSearch.MAX_PLY;
+    
+    public static final long DEFAULT_MOVE_TIME_MILLIS = 1_000L;
+    
+    public static final int DEFAULT_THREADS = 1;
+    
+    public static final int MAX_THREADS = 256;
+    
+    // Progress of the main search after one completed iteration, with nodes summed over all threads and the
+    // principal variation read back from the transposition table.
+    public record SearchInfo(int depth, int score, long nodes, long elapsedNanos, int hashFull, int[] principalVariation) {
+        
+        public long getTimeMillis() {
+            
+            return elapsedNanos / 1_000_000L;
+        }
+        
+        public long getNodesPerSecond() {
+            
+            return (elapsedNanos == 0L) ? 0L : (long) ((nodes * 1e9) / elapsedNanos);
+        }
+        
+        public boolean isMate() {
+            
+            return Math.abs(score) > ChessSearch.MATE_BOUND;
+        }
+        
+        // Plies to the mate of a mate score, positive when the side to move mates
+        public int getMatePlies() {
+            
+            return (score > 0) ? (ChessSearch.MATE_SCORE - score) : -(ChessSearch.MATE_SCORE + score);
+        }
+        
+    }
+    
+    private final ChessTranspositionTable transpositionTable;
+    
+    // Index 0 is the main search, the rest are Lazy SMP helpers. Only the engine thread replaces
+    // the array; other threads read it to stop the searches or sum their nodes.
+    private volatile ChessSearch[] chessSearches;
+    
+    // Searches run one at a time on a daemon thread, never on the FX application thread
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        
+        final var thread = new Thread(runnable, "chess-engine");
+        
+        thread.setDaemon(true);
+        
+        return thread;
+    });
+    
+    private final AtomicInteger helperThreadCount = new AtomicInteger();
+    
+    private final ExecutorService helperExecutor = Executors.newCachedThreadPool(runnable -> {
+        
+        final var thread = new Thread(runnable, "chess-engine-helper-" + helperThreadCount.incrementAndGet());
+        
+        thread.setDaemon(true);
+        
+        return thread;
+    });
+    
+    private final AtomicLong requestCount = new AtomicLong();
+    
+    // Requests numbered up to this one were cancelled, even if they have not started yet
+    private volatile long cancelledRequest;
+    
+    private volatile int maxDepth = DEFAULT_MAX_DEPTH;
+    
+    private volatile long moveTimeMillis = DEFAULT_MOVE_TIME_MILLIS;
+    
+    private volatile int threads = DEFAULT_THREADS;
+    
+    private volatile long searchNanos;
+    
+    // Consulted before every search; null plays without a book
+    private volatile ChessOpeningBook openingBook;
+    
+    // Plays covered endgames straight from the tables and is probed inside the search; null for none
+    private volatile ChessTablebase tablebase;
+    
+    // Told about every completed iteration, on the engine thread; null for none
+    private volatile Consumer<SearchInfo> infoListener;
+    
+    public ChessEngine(final ChessTranspositionTable transpositionTable) {
+        
+        this.transpositionTable = transpositionTable;
+        
+        chessSearches = new ChessSearch[] {new ChessSearch(transpositionTable)};
+        
+    }
+    
+    public ChessTranspositionTable getTranspositionTable() {
+        
+        return transpositionTable;
+    }
+    
+    public int getMaxDepth() {
+        
+        return maxDepth;
+    }
+    
+    public void setMaxDepth(final int maxDepth) {
+        
+        if (maxDepth < 1) {
+            
+            throw new IllegalArgumentException("maximum depth must be at least 1");
+            
+        }
+        
+        this.maxDepth = maxDepth;
+        
+    }
+    
+    public long getMoveTimeMillis() {
+        
+        return moveTimeMillis;
+    }
+    
+    // 0 searches until the depth limit is reached
+    public void setMoveTimeMillis(final long moveTimeMillis) {
+        
+        if (moveTimeMillis < 0L) {
+            
+            throw new IllegalArgumentException("move time cannot be negative");
+            
+        }
+        
+        this.moveTimeMillis = moveTimeMillis;
+        
+    }
+    
+    public int getThreads() {
+        
+        return threads;
+    }
+    
+    // Number of threads searching the same position and sharing the transposition table; takes
+    // effect from the next search.
+    public void setThreads(final int threads) {
+        
+        if ((threads < 1) || (threads > MAX_THREADS)) {
+            
+            throw new IllegalArgumentException("thread count must be between 1 and " + MAX_THREADS);
+            
+        }
+        
+        this.threads = threads;
+        
+    }
+    
+    public ChessOpeningBook getOpeningBook() {
+        
+        return openingBook;
+    }
+    
+    public void setOpeningBook(final ChessOpeningBook openingBook) {
+        
+        this.openingBook = openingBook;
+        
+    }
+    
+    public ChessTablebase getTablebase() {
+        
+        return tablebase;
+    }
+    
+    public void setTablebase(final ChessTablebase tablebase) {
+        
+        this.tablebase = tablebase;
+        
+    }
+    
+    public Consumer<SearchInfo> getInfoListener() {
+        
+        return infoListener;
+    }
+    
+    public void setInfoListener(final Consumer<SearchInfo> infoListener) {
+        
+        this.infoListener = infoListener;
+        
+    }
+    
+    // Searches a snapshot of the position on the engine thread. The future completes with the
+    // chosen move, or ChessMove.NO_MOVE when there is no legal move or the search was cancelled
+    // before finishing its first iteration. Positions in the opening book or the endgame tables are
+    // answered at once.
+    public CompletableFuture<Integer> findMove(final ChessPosition chessPosition) {
+        
+        final ChessTablebase endgameTablebase = tablebase;
+        
+        if (endgameTablebase != null) {
+            
+            final int tablebaseMove = endgameTablebase.findBestMove(chessPosition);
+            
+            if (tablebaseMove != ChessMove.NO_MOVE) {
+                
+                return CompletableFuture.completedFuture(tablebaseMove);
+                
+            }
+            
+        }
+        
+        final ChessOpeningBook book = openingBook;
+        
+        if (book != null) {
+            
+            final int bookMove = book.selectMove(chessPosition);
+            
+            if (bookMove != ChessMove.NO_MOVE) {
+                
+                return CompletableFuture.completedFuture(bookMove);
+                
+            }
+            
+        }
+        
+        final var snapshot = new ChessPosition(chessPosition);
+        
+        final int depth = maxDepth;
+        
+        final long timeMillis = moveTimeMillis;
+        
+        final int threadCount = threads;
+        
+        final long request = requestCount.incrementAndGet();
+        
+        return CompletableFuture.supplyAsync(() -> {
+            
+            if ((request <= cancelledRequest) || !isSearchable(snapshot)) {
+                
+                return ChessMove.NO_MOVE;
+                
+            }
+            
+            transpositionTable.newSearch();
+            
+            final ChessSearch[] searches = getSearches(threadCount);
+            
+            final int move = search(searches, snapshot, depth, timeMillis, request);
+            
+            return (searches[0].getCompletedDepth() > 0) ? move : ChessMove.NO_MOVE;
+        }, executor);
+    }
+    
+    // Lazy SMP: the helpers run the same iterative deepening on their own copies of the position and
+    // only cooperate through the transposition table. The main search decides when to stop and its
+    // move is the one played.
+    private int search(final ChessSearch[] searches, final ChessPosition chessPosition, final int depth, final long timeMillis,
+            final long request) {
+        
+        final long startNanos = System.nanoTime();
+        
+        final ChessTablebase endgameTablebase = tablebase;
+        
+        final Consumer<SearchInfo> listener = infoListener;
+        
+        searches[0].setIterationListener((listener == null) ? null
+                : () -> listener.accept(getSearchInfo(searches, chessPosition, startNanos)));
+        
+        for (final ChessSearch chessSearch : searches) {
+            
+            chessSearch.setTablebase(endgameTablebase);
+            
+            chessSearch.prepare();
+            
+        }
+        
+        // Checked after the stop flags were cleared, so a cancel racing with the start is never lost
+        
+        if (request <= cancelledRequest) {
+            
+            stopSearches(searches);
+            
+        }
+        
+        final var helpers = new CompletableFuture<?>[searches.length - 1];
+        
+        for (int i = 1; i < searches.length; i++) {
+            
+            final ChessSearch helper = searches[i];
+            
+            helpers[i - 1] = CompletableFuture.runAsync(() -> helper.searchPrepared(chessPosition, depth, timeMillis), helperExecutor);
+            
+        }
+        
+        final int move = searches[0].searchPrepared(chessPosition, depth, timeMillis);
+        
+        stopSearches(searches);
+        
+        CompletableFuture.allOf(helpers).join();
+        
+        searchNanos = System.nanoTime() - startNanos;
+        
+        return move;
+    }
+    
+    // Called on the engine thread only; searches are reused while the thread count stays the same.
+    private ChessSearch[] getSearches(final int threadCount) {
+        
+        final ChessSearch[] searches = chessSearches;
+        
+        if (searches.length == threadCount) {
+            
+            return searches;
+            
+        }
+        
+        final ChessSearch[] resized = Arrays.copyOf(searches, threadCount);
+        
+        for (int i = searches.length; i < threadCount; i++) {
+            
+            resized[i] = new ChessSearch(transpositionTable, i);
+            
+        }
+        
+        chessSearches = resized;
+        
+        return resized;
+    }
+    
+    private SearchInfo getSearchInfo(final ChessSearch[] searches, final ChessPosition chessPosition, final long startNanos) {
+        
+        long nodes = 0L;
+        
+        for (final ChessSearch chessSearch : searches) {
+            
+            nodes += chessSearch.getNodes();
+            
+        }
+        
+        return new SearchInfo(searches[0].getCompletedDepth(), searches[0].getBestScore(), nodes, System.nanoTime() - startNanos,
+                transpositionTable.getHashFull(), getPrincipalVariation(chessPosition, searches[0].getBestMove()));
+    }
+    
+    // The best move followed by the hash moves of the positions it leads to, as long as they are legal
+    // and the line does not repeat.
+    private int[] getPrincipalVariation(final ChessPosition chessPosition, final int bestMove) {
+        
+        final var principalVariation = new int[ChessSearch.MAX_PLY];
+        
+        final var legalMoves = new int[ChessMove.MAX_MOVES];
+        
+        final var line = new ChessPosition(chessPosition);
+        
+        int length = 0;
+        
+        int move = bestMove;
+        
+        while ((move != ChessMove.NO_MOVE) && (length < principalVariation.length)) {
+            
+            if (!isLegal(line, move, legalMoves)) {
+                
+                break;
+                
+            }
+            
+            line.makeMove(move);
+            
+            principalVariation[length++] = move;
+            
+            if (line.getRepetitionCount() > 0) {
+                
+                break;
+                
+            }
+            
+            final long data = transpositionTable.probe(line.getZobristKey());
+            
+            move = (data == ChessTranspositionTable.NO_ENTRY) ? ChessMove.NO_MOVE : ChessTranspositionTable.getMove(data);
+            
+        }
+        
+        return Arrays.copyOf(principalVariation, length);
+    }
+    
+    private static boolean isLegal(final ChessPosition chessPosition, final int move, final int[] legalMoves) {
+        
+        final int legalMoveCount = ChessMoveGenerator.generateLegalMoves(chessPosition, legalMoves, 0);
+        
+        for (int i = 0; i < legalMoveCount; i++) {
+            
+            if (legalMoves[i] == move) {
+                
+                return true;
+                
+            }
+            
+        }
+        
+        return false;
+    }
+    
+    private static void stopSearches(final ChessSearch[] searches) {
+        
+        for (final ChessSearch chessSearch : searches) {
+            
+            chessSearch.stop();
+            
+        }
+        
+    }
+    
+    // Stops the running search and drops queued ones; a stopped search completes with the best
+    // move found so far.
+    public void cancel() {
+        
+        cancelledRequest = requestCount.get();
+        
+        stopSearches(chessSearches);
+        
+    }
+    
+    // Nodes of the last search summed over all threads
+    public long getNodes() {
+        
+        long nodes = 0L;
+        
+        for (final ChessSearch chessSearch : chessSearches) {
+            
+            nodes += chessSearch.getNodes();
+            
+        }
+        
+        return nodes;
+    }
+    
+    // Share of beta cutoffs in the last search that came from the first move tried, over all threads
+    public double getFirstMoveCutoffRate() {
+        
+        long betaCutoffs = 0L;
+        
+        long firstMoveCutoffs = 0L;
+        
+        for (final ChessSearch chessSearch : chessSearches) {
+            
+            betaCutoffs += chessSearch.getBetaCutoffs();
+            
+            firstMoveCutoffs += chessSearch.getFirstMoveCutoffs();
+            
+        }
+        
+        return (betaCutoffs == 0L) ? 0.0 : ((double) firstMoveCutoffs / betaCutoffs);
+    }
+    
+    // Pawn table hits and misses since the engine was created, over all threads
+    
+    public long getPawnTableHitCount() {
+        
+        long hits = 0L;
+        
+        for (final ChessSearch chessSearch : chessSearches) {
+            
+            hits += chessSearch.getPawnTable().getHitCount();
+            
+        }
+        
+        return hits;
+    }
+    
+    public long getPawnTableMissCount() {
+        
+        long misses = 0L;
+        
+        for (final ChessSearch chessSearch : chessSearches) {
+            
+            misses += chessSearch.getPawnTable().getMissCount();
+            
+        }
+        
+        return misses;
+    }
+    
+    public double getPawnTableHitRate() {
+        
+        final long hits = getPawnTableHitCount();
+        
+        final long probes = hits + getPawnTableMissCount();
+        
+        return (probes == 0L) ? 0.0 : ((double) hits / probes);
+    }
+    
+    public long getSearchTimeMillis() {
+        
+        return searchNanos / 1_000_000L;
+    }
+    
+    public long getNodesPerSecond() {
+        
+        final long nanos = searchNanos;
+        
+        return (nanos == 0L) ? 0L : (long) ((getNodes() * 1e9) / nanos);
+    }
+    
+    public int getCompletedDepth() {
+        
+        return chessSearches[0].getCompletedDepth();
+    }
+    
+    public int getBestScore() {
+        
+        return chessSearches[0].getBestScore();
+    }
+    
+    public void shutdown() {
+        
+        cancel();
+        
+        executor.shutdownNow();
+        
+        helperExecutor.shutdownNow();
+        
+    }
+    
+    // Both kings on the board and the side that just moved not left in check
+    private static boolean isSearchable(final ChessPosition chessPosition) {
+        
+        final int sideToMove = chessPosition.getSideToMove();
+        
+        return (Long.bitCount(chessPosition.getPieceBitboard(ChessPosition.piece(ChessPosition.WHITE, ChessPosition.KING))) == 1)
+                && (Long.bitCount(chessPosition.getPieceBitboard(ChessPosition.piece(ChessPosition.BLACK, ChessPosition.KING))) == 1)
+                && !chessPosition.isSquareAttacked(chessPosition.getKingSquare(sideToMove ^ 1), sideToMove);
+    }
+    
+}
\ No newline at end of file
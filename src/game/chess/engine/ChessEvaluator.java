@@ -0,0 +1,223 @@
+package game.chess.engine;
+
+import game.chess.ChessPieceSquareTables;
+import game.chess.ChessPosition;
+
+public final class ChessEvaluator {
+    
+    // Pawn structure terms, middlegame and endgame
+    
+    private static final int DOUBLED_PAWN_MIDDLEGAME = -10;
+    
+    private static final int DOUBLED_PAWN_ENDGAME = -20;
+    
+    private static final int ISOLATED_PAWN_MIDDLEGAME = -5;
+    
+    private static final int ISOLATED_PAWN_ENDGAME = -15;
+    
+    // Indexed by rank counted from the pawn's own side, 1 being its starting rank
+    
+    private static final int[] PASSED_PAWN_MIDDLEGAME = {0, 0, 5, 10, 20, 35, 55, 0};
+    
+    private static final int[] PASSED_PAWN_ENDGAME = {0, 5, 10, 20, 35, 60, 90, 0};
+    
+    // Extra endgame bonus for a passed pawn whose path to promotion is empty
+    private static final int[] FREE_PASSED_PAWN_ENDGAME = {0, 0, 5, 10, 20, 35, 60, 0};
+    
+    private static final long[] FILE_MASKS = new long[8];
+    
+    private static final long[] ADJACENT_FILE_MASKS = new long[8];
+    
+    // Squares ahead of a pawn on its own file, and on its own and adjacent files
+    
+    private static final long[][] FRONT_SPANS = new long[2][ChessPosition.SQUARE_COUNT];
+    
+    private static final long[][] PASSED_PAWN_MASKS = new long[2][ChessPosition.SQUARE_COUNT];
+    
+    static {
+        
+        for (int x = 0; x < 8; x++) {
+            
+            for (int y = 0; y < 8; y++) {
+                
+                FILE_MASKS[x] |= 1L << ChessPosition.square(x, y);
+                
+            }
+            
+        }
+        
+        for (int x = 0; x < 8; x++) {
+            
+            ADJACENT_FILE_MASKS[x] = ((x > 0) ? FILE_MASKS[x - 1] : 0L) | ((x < 7) ? FILE_MASKS[x + 1] : 0L);
+            
+        }
+        
+        for (int square = 0; square < ChessPosition.SQUARE_COUNT; square++) {
+            
+            final int x = ChessPosition.squareX(square);
+            final int y = ChessPosition.squareY(square);
+            
+            // White pawns move towards row 0, black pawns towards row 7
+            
+            for (int frontY = 0; frontY < 8; frontY++) {
+                
+                final long row = 0xFFL << (frontY * 8);
+                
+                final int color = (frontY < y) ? ChessPosition.WHITE : ((frontY > y) ? ChessPosition.BLACK : -1);
+                
+                if (color >= 0) {
+                    
+                    FRONT_SPANS[color][square] |= row & FILE_MASKS[x];
+                    
+                    PASSED_PAWN_MASKS[color][square] |= row & (FILE_MASKS[x] | ADJACENT_FILE_MASKS[x]);
+                    
+                }
+                
+            }
+            
+        }
+        
+    }
+    
+    private ChessEvaluator() {
+        
+        super();
+        
+    }
+    
+    // Static score of the position from the point of view of the side to move. Material and
+    // piece-square scores are kept by ChessPosition as pieces are placed and removed, and the pawn
+    // structure comes from the pawn table whenever the pawns have been seen before.
+    public static int evaluate(final ChessPosition chessPosition, final ChessPawnTable pawnTable) {
+        
+        int middlegameScore = chessPosition.getMiddlegameScore();
+        
+        int endgameScore = chessPosition.getEndgameScore();
+        
+        final long pawnKey = chessPosition.getPawnKey();
+        
+        int index = pawnTable.probe(pawnKey);
+        
+        if (index < 0) {
+            
+            index = evaluatePawns(chessPosition, pawnTable, pawnKey);
+            
+        }
+        
+        middlegameScore += pawnTable.getMiddlegameScore(index);
+        
+        endgameScore += pawnTable.getEndgameScore(index);
+        
+        final long passedPawns = pawnTable.getPassedPawns(index);
+        
+        if (passedPawns != 0L) {
+            
+            endgameScore += evaluateFreePassedPawns(chessPosition, passedPawns & chessPosition.getColorBitboard(ChessPosition.WHITE),
+                    ChessPosition.WHITE)
+                    - evaluateFreePassedPawns(chessPosition, passedPawns & chessPosition.getColorBitboard(ChessPosition.BLACK),
+                            ChessPosition.BLACK);
+            
+        }
+        
+        final int score = ChessPieceSquareTables.taper(middlegameScore, endgameScore, chessPosition.getPhase());
+        
+        return (chessPosition.getSideToMove() == ChessPosition.WHITE) ? score : -score;
+    }
+    
+    // Doubled, isolated and passed pawns from white's point of view, stored in the pawn table.
+    private static int evaluatePawns(final ChessPosition chessPosition, final ChessPawnTable pawnTable, final long pawnKey) {
+        
+        final long[] pawns = {
+                chessPosition.getPieceBitboard(ChessPosition.piece(ChessPosition.WHITE, ChessPosition.PAWN)),
+                chessPosition.getPieceBitboard(ChessPosition.piece(ChessPosition.BLACK, ChessPosition.PAWN))
+        };
+        
+        int middlegameScore = 0;
+        
+        int endgameScore = 0;
+        
+        long passedPawns = 0L;
+        
+        for (int color = ChessPosition.WHITE; color <= ChessPosition.BLACK; color++) {
+            
+            final long ownPawns = pawns[color];
+            
+            final long enemyPawns = pawns[color ^ 1];
+            
+            final int sign = (color == ChessPosition.WHITE) ? 1 : -1;
+            
+            for (int x = 0; x < 8; x++) {
+                
+                final int filePawns = Long.bitCount(ownPawns & FILE_MASKS[x]);
+                
+                if (filePawns > 1) {
+                    
+                    middlegameScore += sign * DOUBLED_PAWN_MIDDLEGAME * (filePawns - 1);
+                    
+                    endgameScore += sign * DOUBLED_PAWN_ENDGAME * (filePawns - 1);
+                    
+                }
+                
+                if ((filePawns > 0) && ((ownPawns & ADJACENT_FILE_MASKS[x]) == 0L)) {
+                    
+                    middlegameScore += sign * ISOLATED_PAWN_MIDDLEGAME * filePawns;
+                    
+                    endgameScore += sign * ISOLATED_PAWN_ENDGAME * filePawns;
+                    
+                }
+                
+            }
+            
+            for (long remaining = ownPawns; remaining != 0L; remaining &= remaining - 1) {
+                
+                final int square = Long.numberOfTrailingZeros(remaining);
+                
+                // Passed: no enemy pawn ahead on its own or an adjacent file, and not behind one of its own
+                
+                if (((PASSED_PAWN_MASKS[color][square] & enemyPawns) == 0L) && ((FRONT_SPANS[color][square] & ownPawns) == 0L)) {
+                    
+                    final int rank = relativeRank(color, square);
+                    
+                    middlegameScore += sign * PASSED_PAWN_MIDDLEGAME[rank];
+                    
+                    endgameScore += sign * PASSED_PAWN_ENDGAME[rank];
+                    
+                    passedPawns |= 1L << square;
+                    
+                }
+                
+            }
+            
+        }
+        
+        return pawnTable.store(pawnKey, middlegameScore, endgameScore, passedPawns);
+    }
+    
+    // Depends on the other pieces as well, so it is computed per node from the cached passed pawn mask.
+    private static int evaluateFreePassedPawns(final ChessPosition chessPosition, final long passedPawns, final int color) {
+        
+        int score = 0;
+        
+        for (long remaining = passedPawns; remaining != 0L; remaining &= remaining - 1) {
+            
+            final int square = Long.numberOfTrailingZeros(remaining);
+            
+            if ((FRONT_SPANS[color][square] & chessPosition.getOccupancy()) == 0L) {
+                
+                score += FREE_PASSED_PAWN_ENDGAME[relativeRank(color, square)];
+                
+            }
+            
+        }
+        
+        return score;
+    }
+    
+    private static int relativeRank(final int color, final int square) {
+        
+        final int y = ChessPosition.squareY(square);
+        
+        return (color == ChessPosition.WHITE) ? (7 - y) : y;
+    }
+    
+}
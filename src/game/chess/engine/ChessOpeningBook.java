@@ -0,0 +1,315 @@
+package game.chess.engine;
+
+import game.chess.ChessGameRecord;
+import game.chess.ChessMove;
+import game.chess.ChessMoveGenerator;
+import game.chess.ChessPosition;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+
+public final class ChessOpeningBook {
+    
+    // Opening book in the Polyglot .bin layout: 16-byte big-endian entries of key (8), move (2), weight (2)
+    // and learn data (4), sorted by key as an unsigned number. The file stays memory-mapped and is
+    // binary-searched in place, so lookups take microseconds and the book never lands on the heap.
+    // Entries are keyed by ChessPolyglotKey, so books of other Polyglot tools and books from write() can
+    // be used alike.
+    
+    private static final int ENTRY_BYTES = 16;
+    
+    private static final int MAX_WEIGHT = 0xFFFF;
+    
+    private final MappedByteBuffer buffer;
+    
+    private final int entryCount;
+    
+    // Legal moves of the probed position, to turn book moves back into moves of this engine
+    private final ThreadLocal<int[]> legalMoves = ThreadLocal.withInitial(() -> new int[ChessMove.MAX_MOVES]);
+    
+    // Book moves and weights found by selectMove
+    private final ThreadLocal<int[]> bookMoves = ThreadLocal.withInitial(() -> new int[ChessMove.MAX_MOVES]);
+    
+    private final ThreadLocal<int[]> bookWeights = ThreadLocal.withInitial(() -> new int[ChessMove.MAX_MOVES]);
+    
+    private ChessOpeningBook(final MappedByteBuffer buffer) {
+        
+        this.buffer = buffer;
+        
+        entryCount = buffer.capacity() / ENTRY_BYTES;
+        
+    }
+    
+    public static ChessOpeningBook open(final Path path) throws IOException {
+        
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            
+            final long size = channel.size();
+            
+            if ((size % ENTRY_BYTES) != 0L) {
+                
+                throw new IllegalArgumentException("opening book size must be a multiple of " + ENTRY_BYTES + " bytes: " + path);
+                
+            }
+            
+            return new ChessOpeningBook(channel.map(FileChannel.MapMode.READ_ONLY, 0L, size));
+            
+        }
+        
+    }
+    
+    public int getEntryCount() {
+        
+        return entryCount;
+    }
+    
+    // Book key of the position
+    public static long key(final ChessPosition chessPosition) {
+        
+        return ChessPolyglotKey.of(chessPosition);
+    }
+    
+    // Fills in the legal book moves of the position with their weights and returns how many there are.
+    public int findMoves(final ChessPosition chessPosition, final int[] moves, final int[] weights) {
+        
+        final long key = key(chessPosition);
+        
+        // Lower bound of the key
+        
+        int low = 0;
+        int high = entryCount;
+        
+        while (low < high) {
+            
+            final int middle = (low + high) >>> 1;
+            
+            if (Long.compareUnsigned(buffer.getLong(middle * ENTRY_BYTES), key) < 0) {
+                
+                low = middle + 1;
+                
+            } else {
+                
+                high = middle;
+                
+            }
+            
+        }
+        
+        final int[] positionMoves = legalMoves.get();
+        
+        int legalMoveCount = -1;
+        
+        int count = 0;
+        
+        for (int entry = low; (entry < entryCount) && (buffer.getLong(entry * ENTRY_BYTES) == key); entry++) {
+            
+            if (legalMoveCount < 0) {
+                
+                legalMoveCount = ChessMoveGenerator.generateLegalMoves(chessPosition, positionMoves, 0);
+                
+            }
+            
+            final int bookMove = buffer.getShort((entry * ENTRY_BYTES) + 8) & 0xFFFF;
+            
+            final int weight = buffer.getShort((entry * ENTRY_BYTES) + 10) & 0xFFFF;
+            
+            for (int i = 0; i < legalMoveCount; i++) {
+                
+                if ((encodeMove(positionMoves[i]) == bookMove) && (count < moves.length)) {
+                    
+                    moves[count] = positionMoves[i];
+                    
+                    weights[count] = weight;
+                    
+                    count++;
+                    
+                    break;
+                    
+                }
+                
+            }
+            
+        }
+        
+        return count;
+    }
+    
+    // A book move picked with probability proportional to its weight, or ChessMove.NO_MOVE when the
+    // position is not in the book.
+    public int selectMove(final ChessPosition chessPosition, final RandomGenerator random) {
+        
+        final int[] moves = bookMoves.get();
+        
+        final int[] weights = bookWeights.get();
+        
+        final int count = findMoves(chessPosition, moves, weights);
+        
+        int totalWeight = 0;
+        
+        for (int i = 0; i < count; i++) {
+            
+            totalWeight += weights[i];
+            
+        }
+        
+        if (totalWeight == 0) {
+            
+            return (count == 0) ? ChessMove.NO_MOVE : moves[0];
+            
+        }
+        
+        int remaining = random.nextInt(totalWeight);
+        
+        for (int i = 0; i < count; i++) {
+            
+            remaining -= weights[i];
+            
+            if (remaining < 0) {
+                
+                return moves[i];
+                
+            }
+            
+        }
+        
+        return moves[count - 1];
+    }
+    
+    public int selectMove(final ChessPosition chessPosition) {
+        
+        return selectMove(chessPosition, ThreadLocalRandom.current());
+    }
+    
+    // Builds a book from the first plies of the games. Every move scores 2 for a win and 1 for a draw of
+    // the side that played it, as the Polyglot tools do; moves that never scored are left out.
+    public static void write(final Path path, final List<ChessGameRecord> chessGameRecords, final int maxPlies) throws IOException {
+        
+        if (maxPlies < 1) {
+            
+            throw new IllegalArgumentException("book depth must be at least 1 ply");
+            
+        }
+        
+        final Map<Long, Map<Integer, Long>> scores = new HashMap<>();
+        
+        final var chessPosition = new ChessPosition();
+        
+        for (final ChessGameRecord chessGameRecord : chessGameRecords) {
+            
+            final ChessGameRecord.Result result = chessGameRecord.getResult();
+            
+            if (result == ChessGameRecord.Result.UNKNOWN) {
+                
+                continue;
+                
+            }
+            
+            chessGameRecord.setUpStartPosition(chessPosition);
+            
+            final int plies = Math.min(maxPlies, chessGameRecord.getPlyCount());
+            
+            for (int ply = 0; ply < plies; ply++) {
+                
+                final int move = chessGameRecord.getMove(ply);
+                
+                final int score = (result == ChessGameRecord.Result.DRAW) ? 1
+                        : ((result == ChessGameRecord.Result.WHITE_WINS) == (chessPosition.getSideToMove() == ChessPosition.WHITE)) ? 2 : 0;
+                
+                if (score > 0) {
+                    
+                    scores.computeIfAbsent(key(chessPosition), key -> new HashMap<>()).merge(encodeMove(move), (long) score, Long::sum);
+                    
+                }
+                
+                chessPosition.makeMove(move);
+                
+            }
+            
+        }
+        
+        final List<Long> keys = new ArrayList<>(scores.keySet());
+        
+        keys.sort(Long::compareUnsigned);
+        
+        int entries = 0;
+        
+        for (final Map<Integer, Long> moveScores : scores.values()) {
+            
+            entries += moveScores.size();
+            
+        }
+        
+        final ByteBuffer entryBuffer = ByteBuffer.allocate(entries * ENTRY_BYTES);
+        
+        for (final long key : keys) {
+            
+            final Map<Integer, Long> moveScores = scores.get(key);
+            
+            // Weights are scaled down together when the best of them doesn't fit in 16 bits
+            
+            final long maxScore = moveScores.values().stream().mapToLong(Long::longValue).max().orElse(1L);
+            
+            final List<Map.Entry<Integer, Long>> moves = new ArrayList<>(moveScores.entrySet());
+            
+            moves.sort((first, second) -> Long.compare(second.getValue(), first.getValue()));
+            
+            for (final Map.Entry<Integer, Long> move : moves) {
+                
+                final long weight = (maxScore <= MAX_WEIGHT) ? move.getValue() : Math.max(1L, (move.getValue() * MAX_WEIGHT) / maxScore);
+                
+                entryBuffer.putLong(key);
+                entryBuffer.putShort((short) (int) move.getKey());
+                entryBuffer.putShort((short) weight);
+                entryBuffer.putInt(0);
+                
+            }
+            
+        }
+        
+        entryBuffer.flip();
+        
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            
+            while (entryBuffer.hasRemaining()) {
+                
+                channel.write(entryBuffer);
+                
+            }
+            
+        }
+        
+    }
+    
+    // Polyglot move: to file (3 bits), to rank (3), from file (3), from rank (3), promotion piece (3, knight
+    // is 1). Ranks count from white's side and castling is written as the king taking its own rook.
+    static int encodeMove(final int move) {
+        
+        final int sourceSquare = ChessMove.getSourceSquare(move);
+        
+        final int flags = ChessMove.getFlags(move);
+        
+        final int destinationSquare = (flags == ChessMove.KING_CASTLE) ? (sourceSquare + 3)
+                : (flags == ChessMove.QUEEN_CASTLE) ? (sourceSquare - 4)
+                : ChessMove.getDestinationSquare(move);
+        
+        final int promotion = ChessMove.isPromotion(move) ? (ChessMove.getPromotionType(move) - ChessPosition.KNIGHT + 1) : 0;
+        
+        return ChessPosition.squareX(destinationSquare)
+                | ((7 - ChessPosition.squareY(destinationSquare)) << 3)
+                | (ChessPosition.squareX(sourceSquare) << 6)
+                | ((7 - ChessPosition.squareY(sourceSquare)) << 9)
+                | (promotion << 12);
+    }
+    
+}
\ No newline at end of file
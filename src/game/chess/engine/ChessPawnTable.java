@@ -0,0 +1,132 @@
+package game.chess.engine;
+
+import java.util.Arrays;
+
+public final class ChessPawnTable {
+    
+    // Caches pawn structure scores by pawn key. Each search thread owns one, so it needs no synchronisation.
+    
+    public static final int DEFAULT_ENTRIES = 1 << 14;
+    
+    // Parallel arrays indexed by the low bits of the pawn key. An empty slot holds key 0 with zero
+    // scores and no passed pawns, which is exactly the entry for a board without pawns.
+    
+    private final long[] keys;
+    
+    private final int[] middlegameScores;
+    
+    private final int[] endgameScores;
+    
+    private final long[] passedPawns;
+    
+    private final int indexMask;
+    
+    private long hits;
+    
+    private long misses;
+    
+    public ChessPawnTable() {
+        
+        this(DEFAULT_ENTRIES);
+        
+    }
+    
+    public ChessPawnTable(final int entries) {
+        
+        if ((entries < 1) || (Integer.bitCount(entries) != 1)) {
+            
+            throw new IllegalArgumentException("pawn table size must be a positive power of two");
+            
+        }
+        
+        keys = new long[entries];
+        
+        middlegameScores = new int[entries];
+        
+        endgameScores = new int[entries];
+        
+        passedPawns = new long[entries];
+        
+        indexMask = entries - 1;
+        
+    }
+    
+    public void clear() {
+        
+        Arrays.fill(keys, 0L);
+        Arrays.fill(middlegameScores, 0);
+        Arrays.fill(endgameScores, 0);
+        Arrays.fill(passedPawns, 0L);
+        
+        hits = 0L;
+        misses = 0L;
+        
+    }
+    
+    // Returns the index of the entry for the key, or -1 when it has to be computed and stored.
+    public int probe(final long pawnKey) {
+        
+        final int index = (int) pawnKey & indexMask;
+        
+        if (keys[index] == pawnKey) {
+            
+            hits++;
+            
+            return index;
+            
+        }
+        
+        misses++;
+        
+        return -1;
+    }
+    
+    public int store(final long pawnKey, final int middlegameScore, final int endgameScore, final long passedPawns) {
+        
+        final int index = (int) pawnKey & indexMask;
+        
+        keys[index] = pawnKey;
+        
+        middlegameScores[index] = middlegameScore;
+        
+        endgameScores[index] = endgameScore;
+        
+        this.passedPawns[index] = passedPawns;
+        
+        return index;
+    }
+    
+    public int getMiddlegameScore(final int index) {
+        
+        return middlegameScores[index];
+    }
+    
+    public int getEndgameScore(final int index) {
+        
+        return endgameScores[index];
+    }
+    
+    // Passed pawns of both colors
+    public long getPassedPawns(final int index) {
+        
+        return passedPawns[index];
+    }
+    
+    public long getHitCount() {
+        
+        return hits;
+    }
+    
+    public long getMissCount() {
+        
+        return misses;
+    }
+    
+    public double getHitRate() {
+        
+        final long probes = hits + misses;
+        
+        return (probes == 0L) ? 0.0 : ((double) hits / probes);
+    }
+    
+}
\ No newline at end of file
@@ -0,0 +1,750 @@
+package game.chess.engine;
+
+import game.chess.ChessMove;
+import game.chess.ChessMoveGenerator;
+import game.chess.ChessPosition;
+
+import java.util.Arrays;
+
+public final class ChessSearch {
+    
+    public static final int MAX_PLY = 100;
+    
+    public static final int INFINITE_SCORE = 32_000;
+    
+    public static final int MATE_SCORE = 31_000;
+    
+    // Scores beyond this bound are mates, stored in the transposition table relative to the node
+    static final int MATE_BOUND = MATE_SCORE - (2 * MAX_PLY);
+    
+    private static final int DRAW_SCORE = 0;
+    
+    // The clock is only read every 2048 nodes
+    private static final long TIME_CHECK_MASK = 2047L;
+    
+    // Lazy SMP helpers skip blocks of depths so that threads spread over different iterations.
+    // Helper i uses entry (i - 1) % 20: it skips a depth when ((depth + phase) / size) is odd.
+    
+    private static final int[] SKIP_SIZES = {1, 1, 2, 2, 2, 2, 3, 3, 3, 3, 3, 3, 4, 4, 4, 4, 4, 4, 4, 4};
+    
+    private static final int[] SKIP_PHASES = {0, 1, 0, 1, 2, 3, 0, 1, 2, 3, 4, 5, 0, 1, 2, 3, 4, 5, 6, 7};
+    
+    // Move ordering: hash move, captures and promotions, the two killers of the ply, then quiet moves by history
+    
+    private static final int HASH_MOVE_SCORE = Integer.MAX_VALUE;
+    
+    private static final int CAPTURE_SCORE = 3_000_000;
+    
+    private static final int PROMOTION_SCORE = 2_000_000;
+    
+    private static final int[] KILLER_SCORES = {1_000_001, 1_000_000};
+    
+    private static final int KILLER_SLOTS = 2;
+    
+    // History scores are halved whenever one reaches the limit, so they stay below the killers
+    private static final int HISTORY_LIMIT = 1 << 19;
+    
+    private final ChessTranspositionTable transpositionTable;
+    
+    // Private to this thread, unlike the transposition table
+    private final ChessPawnTable pawnTable = new ChessPawnTable();
+    
+    // 0 for the main search, 1 and up for helper threads
+    private final int threadIndex;
+    
+    // Moves are made and unmade on this one position, which carries the game history for repetitions
+    private final ChessPosition position = new ChessPosition();
+    
+    private final int[] moves = new int[(MAX_PLY + 1) * ChessMove.MAX_MOVES];
+    
+    private final int[] moveScores = new int[(MAX_PLY + 1) * ChessMove.MAX_MOVES];
+    
+    // Quiet moves that caused a beta cutoff, two per ply
+    private final int[] killers = new int[(MAX_PLY + 1) * KILLER_SLOTS];
+    
+    // Butterfly history indexed by side, source and destination square
+    private final int[] history = new int[2 * ChessPosition.SQUARE_COUNT * ChessPosition.SQUARE_COUNT];
+    
+    // Endgame tables probed at every node with three pieces left; null when there are none
+    private ChessTablebase tablebase;
+    
+    // Run on the search thread after every completed iteration; null for none
+    private Runnable iterationListener;
+    
+    private volatile boolean stopped;
+    
+    private long deadline;
+    
+    private long nodes;
+    
+    private long betaCutoffs;
+    
+    private long firstMoveCutoffs;
+    
+    private int rootBestMove;
+    
+    private int rootBestScore;
+    
+    private int completedDepth;
+    
+    public ChessSearch(final ChessTranspositionTable transpositionTable) {
+        
+        this(transpositionTable, 0);
+        
+    }
+    
+    public ChessSearch(final ChessTranspositionTable transpositionTable, final int threadIndex) {
+        
+        if (threadIndex < 0) {
+            
+            throw new IllegalArgumentException("thread index cannot be negative");
+            
+        }
+        
+        this.transpositionTable = transpositionTable;
+        
+        this.threadIndex = threadIndex;
+        
+    }
+    
+    // Iterative deepening up to the depth limit or until the time limit (0 for none) runs out.
+    // Returns the best move found, or ChessMove.NO_MOVE if the side to move has no legal move.
+    public int search(final ChessPosition chessPosition, final int maxDepth, final long timeLimitMillis) {
+        
+        stopped = false;
+        
+        return searchPrepared(chessPosition, maxDepth, timeLimitMillis);
+    }
+    
+    void setTablebase(final ChessTablebase tablebase) {
+        
+        this.tablebase = tablebase;
+        
+    }
+    
+    void setIterationListener(final Runnable iterationListener) {
+        
+        this.iterationListener = iterationListener;
+        
+    }
+    
+    // Clears the stop flag ahead of searchPrepared, on the thread that may later call stop(), so that
+    // a stop issued before the search thread starts running is not lost.
+    void prepare() {
+        
+        stopped = false;
+        
+    }
+    
+    int searchPrepared(final ChessPosition chessPosition, final int maxDepth, final long timeLimitMillis) {
+        
+        deadline = (timeLimitMillis > 0L) ? (System.nanoTime() + (timeLimitMillis * 1_000_000L)) : Long.MAX_VALUE;
+        
+        nodes = 0L;
+        
+        betaCutoffs = 0L;
+        
+        firstMoveCutoffs = 0L;
+        
+        // Killers only make sense for the tree they came from; history is kept, but aged
+        
+        Arrays.fill(killers, ChessMove.NO_MOVE);
+        
+        ageHistory();
+        
+        rootBestMove = ChessMove.NO_MOVE;
+        
+        rootBestScore = 0;
+        
+        completedDepth = 0;
+        
+        position.copyFrom(chessPosition);
+        
+        final int legalMoveCount = ChessMoveGenerator.generateLegalMoves(position, moves, 0);
+        
+        if (legalMoveCount == 0) {
+            
+            return ChessMove.NO_MOVE;
+            
+        }
+        
+        final int firstLegalMove = moves[0];
+        
+        for (int depth = 1; (depth <= Math.min(maxDepth, MAX_PLY)) && !stopped; depth++) {
+            
+            if (skipsDepth(depth)) {
+                
+                continue;
+                
+            }
+            
+            final int score = negamax(0, depth, -INFINITE_SCORE, INFINITE_SCORE);
+            
+            if (!stopped) {
+                
+                rootBestScore = score;
+                
+                completedDepth = depth;
+                
+                if (iterationListener != null) {
+                    
+                    iterationListener.run();
+                    
+                }
+                
+                if (Math.abs(score) > MATE_BOUND) {
+                    
+                    // A forced mate was found, deeper iterations cannot improve it
+                    
+                    break;
+                    
+                }
+                
+            }
+            
+        }
+        
+        return (rootBestMove != ChessMove.NO_MOVE) ? rootBestMove : firstLegalMove;
+    }
+    
+    // Makes a running search return as soon as possible; safe to call from any thread.
+    public void stop() {
+        
+        stopped = true;
+        
+    }
+    
+    public ChessPawnTable getPawnTable() {
+        
+        return pawnTable;
+    }
+    
+    public int getThreadIndex() {
+        
+        return threadIndex;
+    }
+    
+    public boolean isStopped() {
+        
+        return stopped;
+    }
+    
+    public long getNodes() {
+        
+        return nodes;
+    }
+    
+    public long getBetaCutoffs() {
+        
+        return betaCutoffs;
+    }
+    
+    // Beta cutoffs caused by the first move searched; close to 1.0 when move ordering works
+    public long getFirstMoveCutoffs() {
+        
+        return firstMoveCutoffs;
+    }
+    
+    // Best root move so far, including moves from an unfinished iteration
+    int getBestMove() {
+        
+        return rootBestMove;
+    }
+    
+    public int getBestScore() {
+        
+        return rootBestScore;
+    }
+    
+    public int getCompletedDepth() {
+        
+        return completedDepth;
+    }
+    
+    private boolean skipsDepth(final int depth) {
+        
+        if (threadIndex == 0) {
+            
+            return false;
+            
+        }
+        
+        final int i = (threadIndex - 1) % SKIP_SIZES.length;
+        
+        return (((depth + SKIP_PHASES[i]) / SKIP_SIZES[i]) & 1) != 0;
+    }
+    
+    private boolean checkLimits() {
+        
+        if (((++nodes & TIME_CHECK_MASK) == 0L) && (System.nanoTime() > deadline)) {
+            
+            stopped = true;
+            
+        }
+        
+        return stopped;
+    }
+    
+    private int negamax(final int ply, int depth, int alpha, int beta) {
+        
+        if (depth <= 0) {
+            
+            return quiescence(ply, alpha, beta);
+            
+        }
+        
+        if (checkLimits()) {
+            
+            return 0;
+            
+        }
+        
+        if (ply > 0) {
+            
+            if (isDraw()) {
+                
+                return DRAW_SCORE;
+                
+            }
+            
+            // Mate distance pruning: no line from here can beat a shorter mate already found
+            
+            alpha = Math.max(alpha, -MATE_SCORE + ply);
+            
+            beta = Math.min(beta, MATE_SCORE - ply - 1);
+            
+            if (alpha >= beta) {
+                
+                return alpha;
+                
+            }
+            
+            final int tablebaseScore = probeTablebase(ply);
+            
+            if (tablebaseScore != ChessTablebase.UNKNOWN) {
+                
+                return tablebaseScore;
+                
+            }
+            
+        }
+        
+        if (ply >= MAX_PLY) {
+            
+            return ChessEvaluator.evaluate(position, pawnTable);
+            
+        }
+        
+        final long key = position.getZobristKey();
+        
+        final long entry = transpositionTable.probe(key);
+        
+        int hashMove = ChessTranspositionTable.getMove(entry);
+        
+        if ((entry != ChessTranspositionTable.NO_ENTRY) && (ply > 0) && (ChessTranspositionTable.getDepth(entry) >= depth)) {
+            
+            final int score = scoreFromTable(ChessTranspositionTable.getScore(entry), ply);
+            
+            final int bound = ChessTranspositionTable.getBound(entry);
+            
+            if ((bound == ChessTranspositionTable.BOUND_EXACT)
+                    || ((bound == ChessTranspositionTable.BOUND_LOWER) && (score >= beta))
+                    || ((bound == ChessTranspositionTable.BOUND_UPPER) && (score <= alpha))) {
+                
+                return score;
+                
+            }
+            
+        }
+        
+        if ((ply == 0) && (rootBestMove != ChessMove.NO_MOVE)) {
+            
+            hashMove = rootBestMove;
+            
+        }
+        
+        final boolean inCheck = position.isInCheck();
+        
+        if (inCheck) {
+            
+            // Check extension
+            
+            depth++;
+            
+        }
+        
+        final int start = ply * ChessMove.MAX_MOVES;
+        
+        final int end = ChessMoveGenerator.generateLegalMoves(position, moves, start);
+        
+        if (end == start) {
+            
+            return inCheck ? (-MATE_SCORE + ply) : DRAW_SCORE;
+            
+        }
+        
+        scoreMoves(ply, start, end, hashMove);
+        
+        final int originalAlpha = alpha;
+        
+        int bestScore = -INFINITE_SCORE;
+        
+        int bestMove = ChessMove.NO_MOVE;
+        
+        for (int i = start; i < end; i++) {
+            
+            final int move = pickMove(i, end);
+            
+            position.makeMove(move);
+            
+            int score;
+            
+            if (i == start) {
+                
+                score = -negamax(ply + 1, depth - 1, -beta, -alpha);
+                
+            } else {
+                
+                // Principal variation search: prove the move is no better with a null window first
+                
+                score = -negamax(ply + 1, depth - 1, -alpha - 1, -alpha);
+                
+                if ((score > alpha) && (score < beta)) {
+                    
+                    score = -negamax(ply + 1, depth - 1, -beta, -alpha);
+                    
+                }
+                
+            }
+            
+            position.unmakeMove();
+            
+            if (stopped) {
+                
+                return 0;
+                
+            }
+            
+            if (score > bestScore) {
+                
+                bestScore = score;
+                
+                bestMove = move;
+                
+                if (score > alpha) {
+                    
+                    alpha = score;
+                    
+                    if (ply == 0) {
+                        
+                        rootBestMove = move;
+                        
+                    }
+                    
+                    if (alpha >= beta) {
+                        
+                        betaCutoffs++;
+                        
+                        if (i == start) {
+                            
+                            firstMoveCutoffs++;
+                            
+                        }
+                        
+                        if (!ChessMove.isCapture(move) && !ChessMove.isPromotion(move)) {
+                            
+                            updateQuietCutoff(position.getSideToMove(), ply, depth, move);
+                            
+                        }
+                        
+                        break;
+                        
+                    }
+                    
+                }
+                
+            }
+            
+        }
+        
+        final int bound = (bestScore >= beta)
+                ? ChessTranspositionTable.BOUND_LOWER
+                : ((bestScore > originalAlpha) ? ChessTranspositionTable.BOUND_EXACT : ChessTranspositionTable.BOUND_UPPER);
+        
+        transpositionTable.store(key, bestMove, scoreToTable(bestScore, ply), depth, bound, 0);
+        
+        return bestScore;
+    }
+    
+    private int quiescence(final int ply, int alpha, final int beta) {
+        
+        if (checkLimits()) {
+            
+            return 0;
+            
+        }
+        
+        final int tablebaseScore = probeTablebase(ply);
+        
+        if (tablebaseScore != ChessTablebase.UNKNOWN) {
+            
+            return tablebaseScore;
+            
+        }
+        
+        if (ply >= MAX_PLY) {
+            
+            return ChessEvaluator.evaluate(position, pawnTable);
+            
+        }
+        
+        final boolean inCheck = position.isInCheck();
+        
+        final int start = ply * ChessMove.MAX_MOVES;
+        
+        final int end;
+        
+        int bestScore;
+        
+        if (inCheck) {
+            
+            // No standing pat while in check: every evasion is searched
+            
+            end = ChessMoveGenerator.generateLegalMoves(position, moves, start);
+            
+            if (end == start) {
+                
+                return -MATE_SCORE + ply;
+                
+            }
+            
+            bestScore = -INFINITE_SCORE;
+            
+        } else {
+            
+            bestScore = ChessEvaluator.evaluate(position, pawnTable);
+            
+            if (bestScore >= beta) {
+                
+                return bestScore;
+                
+            }
+            
+            alpha = Math.max(alpha, bestScore);
+            
+            end = ChessMoveGenerator.generateLegalCaptures(position, moves, start);
+            
+        }
+        
+        scoreMoves(ply, start, end, ChessMove.NO_MOVE);
+        
+        for (int i = start; i < end; i++) {
+            
+            final int move = pickMove(i, end);
+            
+            position.makeMove(move);
+            
+            final int score = -quiescence(ply + 1, -beta, -alpha);
+            
+            position.unmakeMove();
+            
+            if (stopped) {
+                
+                return 0;
+                
+            }
+            
+            if (score > bestScore) {
+                
+                bestScore = score;
+                
+                if (score > alpha) {
+                    
+                    alpha = score;
+                    
+                    if (alpha >= beta) {
+                        
+                        break;
+                        
+                    }
+                    
+                }
+                
+            }
+            
+        }
+        
+        return bestScore;
+    }
+    
+    // Exact score of a position in the endgame tables, as a mate score from this ply, or UNKNOWN
+    private int probeTablebase(final int ply) {
+        
+        if ((tablebase == null) || (Long.bitCount(position.getOccupancy()) != 3)) {
+            
+            return ChessTablebase.UNKNOWN;
+            
+        }
+        
+        final int result = tablebase.probe(position);
+        
+        if ((result == ChessTablebase.UNKNOWN) || (result == ChessTablebase.DRAW)) {
+            
+            return result;
+            
+        }
+        
+        final int matePly = ply + ChessTablebase.getPliesToMate(result);
+        
+        return ChessTablebase.isWin(result) ? (MATE_SCORE - matePly) : (-MATE_SCORE + matePly);
+    }
+    
+    // Fifty-move rule, or a repetition of any earlier position in the game or along the current line
+    private boolean isDraw() {
+        
+        return (position.getHalfmoveClock() >= 100) || (position.getRepetitionCount() > 0);
+    }
+    
+    private void scoreMoves(final int ply, final int start, final int end, final int hashMove) {
+        
+        final int killerIndex = ply * KILLER_SLOTS;
+        
+        final int historyIndex = position.getSideToMove() * ChessPosition.SQUARE_COUNT * ChessPosition.SQUARE_COUNT;
+        
+        for (int i = start; i < end; i++) {
+            
+            final int move = moves[i];
+            
+            if (move == hashMove) {
+                
+                moveScores[i] = HASH_MOVE_SCORE;
+                
+            } else if (ChessMove.isCapture(move)) {
+                
+                // MVV-LVA: most valuable victim first, then least valuable attacker
+                
+                final int victim = position.getPiece(ChessMove.getDestinationSquare(move));
+                
+                final int victimType = (victim == ChessPosition.NO_PIECE) ? ChessPosition.PAWN : ChessPosition.pieceType(victim);
+                
+                final int attackerType = ChessPosition.pieceType(position.getPiece(ChessMove.getSourceSquare(move)));
+                
+                moveScores[i] = CAPTURE_SCORE + (victimType * ChessPosition.PIECE_TYPE_COUNT) + (ChessPosition.KING - attackerType)
+                        + (ChessMove.isPromotion(move) ? ChessPosition.PIECE_TYPE_COUNT : 0);
+                
+            } else if (ChessMove.isPromotion(move)) {
+                
+                moveScores[i] = PROMOTION_SCORE;
+                
+            } else if (move == killers[killerIndex]) {
+                
+                moveScores[i] = KILLER_SCORES[0];
+                
+            } else if (move == killers[killerIndex + 1]) {
+                
+                moveScores[i] = KILLER_SCORES[1];
+                
+            } else {
+                
+                moveScores[i] = history[historyIndex + (ChessMove.getSourceSquare(move) * ChessPosition.SQUARE_COUNT)
+                        + ChessMove.getDestinationSquare(move)];
+                
+            }
+            
+        }
+        
+    }
+    
+    private void updateQuietCutoff(final int side, final int ply, final int depth, final int move) {
+        
+        final int killerIndex = ply * KILLER_SLOTS;
+        
+        if (killers[killerIndex] != move) {
+            
+            killers[killerIndex + 1] = killers[killerIndex];
+            
+            killers[killerIndex] = move;
+            
+        }
+        
+        final int index = (side * ChessPosition.SQUARE_COUNT * ChessPosition.SQUARE_COUNT)
+                + (ChessMove.getSourceSquare(move) * ChessPosition.SQUARE_COUNT) + ChessMove.getDestinationSquare(move);
+        
+        history[index] += depth * depth;
+        
+        if (history[index] >= HISTORY_LIMIT) {
+            
+            ageHistory();
+            
+        }
+        
+    }
+    
+    private void ageHistory() {
+        
+        for (int i = 0; i < history.length; i++) {
+            
+            history[i] >>= 1;
+            
+        }
+        
+    }
+    
+    // Selection sort step: swaps the best remaining move into slot i and returns it.
+    private int pickMove(final int i, final int end) {
+        
+        int best = i;
+        
+        for (int j = i + 1; j < end; j++) {
+            
+            if (moveScores[j] > moveScores[best]) {
+                
+                best = j;
+                
+            }
+            
+        }
+        
+        final int move = moves[best];
+        final int moveScore = moveScores[best];
+        
+        moves[best] = moves[i];
+        moveScores[best] = moveScores[i];
+        
+        moves[i] = move;
+        moveScores[i] = moveScore;
+        
+        return move;
+    }
+    
+    private static int scoreToTable(final int score, final int ply) {
+        
+        if (score > MATE_BOUND) {
+            
+            return score + ply;
+            
+        } else if (score < -MATE_BOUND) {
+            
+            return score - ply;
+            
+        }
+        
+        return score;
+    }
+    
+    private static int scoreFromTable(final int score, final int ply) {
+        
+        if (score > MATE_BOUND) {
+            
+            return score - ply;
+            
+        } else if (score < -MATE_BOUND) {
+            
+            return score + ply;
+            
+        }
+        
+        return score;
+    }
+    
+}
\ No newline at end of file
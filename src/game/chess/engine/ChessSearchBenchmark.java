@@ -0,0 +1,93 @@
+package game.chess.engine;
+
+import game.chess.ChessFen;
+import game.chess.ChessMove;
+import game.chess.ChessPosition;
+
+import java.io.PrintStream;
+import java.util.List;
+
+public final class ChessSearchBenchmark {
+    
+    private static final int TRANSPOSITION_TABLE_MEGABYTES = 256;
+    
+    private ChessSearchBenchmark() {
+        
+        super();
+        
+    }
+    
+    // Searches the position to a fixed depth with 1, 2, 4, ... up to maxThreads threads, starting from an
+    // empty transposition table each time, and prints nodes/sec, the time-to-depth speedup over one thread and
+    // the share of beta cutoffs on the first move.
+    public static void run(final ChessPosition chessPosition, final int depth, final int maxThreads, final PrintStream out) {
+        
+        if ((maxThreads < 1) || (maxThreads > ChessEngine.MAX_THREADS)) {
+            
+            throw new IllegalArgumentException("thread count must be between 1 and " + ChessEngine.MAX_THREADS);
+            
+        }
+        
+        final var chessEngine = new ChessEngine(new ChessTranspositionTable(TRANSPOSITION_TABLE_MEGABYTES));
+        
+        chessEngine.setMoveTimeMillis(0L);
+        
+        // Warm up the JIT so the single-threaded baseline is not penalised
+        
+        chessEngine.setMaxDepth(Math.max(1, depth - 2));
+        
+        chessEngine.findMove(chessPosition).join();
+        
+        chessEngine.setMaxDepth(depth);
+        
+        out.printf("%7s %9s %14s %14s %8s %9s %9s  %s%n", "Threads", "Time (s)", "Nodes", "Nodes/sec", "Speedup", "1st cut", "Pawn hit",
+                "Move");
+        
+        long baselineMillis = 0L;
+        
+        for (int threads = 1; threads > 0; threads = (threads < maxThreads) ? Math.min(threads * 2, maxThreads) : 0) {
+            
+            chessEngine.getTranspositionTable().clear();
+            
+            chessEngine.setThreads(threads);
+            
+            final int move = chessEngine.findMove(chessPosition).join();
+            
+            final long millis = Math.max(1L, chessEngine.getSearchTimeMillis());
+            
+            if (threads == 1) {
+                
+                baselineMillis = millis;
+                
+            }
+            
+            out.printf("%7d %9.3f %,14d %,14d %7.2fx %8.1f%% %8.1f%%  %s%n", threads, millis / 1e3, chessEngine.getNodes(),
+                    chessEngine.getNodesPerSecond(), (double) baselineMillis / millis, chessEngine.getFirstMoveCutoffRate() * 100.0,
+                    chessEngine.getPawnTableHitRate() * 100.0, ChessMove.toString(move));
+            
+        }
+        
+        chessEngine.shutdown();
+        
+    }
+    
+    // Usage: ChessSearchBenchmark <depth> <max threads> [FEN]
+    public static void main(final String[] args) {
+        
+        final int depth = (args.length > 0) ? Integer.parseInt(args[0]) : 10;
+        
+        final int maxThreads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        
+        final String fen = (args.length > 2)
+                ? String.join(" ", List.of(args).subList(2, args.length))
+                : ChessFen.START_POSITION;
+        
+        System.out.println("Position: " + fen);
+        System.out.println("Depth: " + depth);
+        System.out.println();
+        
+        run(ChessFen.parse(fen), depth, maxThreads, System.out);
+        
+    }
+    
+}
\ No newline at end of file
@@ -0,0 +1,286 @@
+package game.chess.engine;
+
+import game.chess.ChessMove;
+import game.chess.ChessMoveGenerator;
+import game.chess.ChessPosition;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public final class ChessTablebase {
+    
+    // Distance-to-mate tables for a lone king against king and one piece, built by ChessTablebaseGenerator.
+    // Each table stays memory-mapped and holds one bit-packed value per position: 0 for a draw, otherwise
+    // the distance to mate in plies plus one. Positions are indexed from the point of view of the side with
+    // the piece, which is turned into white by mirroring the board when needed:
+    //
+    //   index = ((side to move, 0 for the strong side) * 64 + strong king) * 64 + weak king) * 64 + piece
+    //
+    // File layout, big-endian: magic "CHTB" (4), version (1), piece type (1), bits per value (1),
+    // reserved (1), value count (4), reserved (4), then the values packed into longs from the lowest bit up.
+    
+    public static final int POSITION_COUNT = 2 * ChessPosition.SQUARE_COUNT * ChessPosition.SQUARE_COUNT * ChessPosition.SQUARE_COUNT;
+    
+    // Probe result for positions no table covers
+    public static final int UNKNOWN = Integer.MIN_VALUE;
+    
+    public static final int DRAW = 0;
+    
+    // Probe results are WIN - plies to mate for the side to move winning, and its negation for losing
+    public static final int WIN = 1_000;
+    
+    static final int MAGIC = 0x43485442;
+    
+    static final int VERSION = 1;
+    
+    static final int HEADER_BYTES = 16;
+    
+    private static final String FILE_EXTENSION = ".ctb";
+    
+    private static final String PIECE_LETTERS = "PNBRQK";
+    
+    // Indexed by piece type; null where there is no table
+    private final ByteBuffer[] tables = new ByteBuffer[ChessPosition.PIECE_TYPE_COUNT];
+    
+    private final int[] valueBits = new int[ChessPosition.PIECE_TYPE_COUNT];
+    
+    public ChessTablebase() {
+        
+        super();
+        
+    }
+    
+    // Maps every table file found in the directory, such as KQK.ctb
+    public static ChessTablebase open(final Path directory) throws IOException {
+        
+        final var chessTablebase = new ChessTablebase();
+        
+        for (int type = ChessPosition.PAWN; type < ChessPosition.KING; type++) {
+            
+            final Path path = directory.resolve(fileName(type));
+            
+            if (Files.isRegularFile(path)) {
+                
+                chessTablebase.load(path);
+                
+            }
+            
+        }
+        
+        return chessTablebase;
+    }
+    
+    public static String fileName(final int pieceType) {
+        
+        return "K" + PIECE_LETTERS.charAt(pieceType) + "K" + FILE_EXTENSION;
+    }
+    
+    public void load(final Path path) throws IOException {
+        
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+            
+            if ((buffer.capacity() < HEADER_BYTES) || (buffer.getInt(0) != MAGIC) || (buffer.get(4) != VERSION)) {
+                
+                throw new IllegalArgumentException("not a chess tablebase file: " + path);
+                
+            }
+            
+            final int type = buffer.get(5);
+            
+            final int bits = buffer.get(6);
+            
+            if ((type < ChessPosition.PAWN) || (type >= ChessPosition.KING) || (bits < 1) || (bits > 8)
+                    || (buffer.getInt(8) != POSITION_COUNT)
+                    || (buffer.capacity() < (HEADER_BYTES + packedBytes(bits)))) {
+                
+                throw new IllegalArgumentException("corrupt chess tablebase file: " + path);
+                
+            }
+            
+            tables[type] = buffer;
+            
+            valueBits[type] = bits;
+            
+        }
+        
+    }
+    
+    public boolean hasTable(final int pieceType) {
+        
+        return tables[pieceType] != null;
+    }
+    
+    // WIN - n when the side to move mates in n plies with perfect play, -(WIN - n) when it is mated in n
+    // plies, DRAW, or UNKNOWN when the position is not a king and one piece against a king with a table
+    // loaded, or still has castling rights.
+    public int probe(final ChessPosition chessPosition) {
+        
+        final long occupancy = chessPosition.getOccupancy();
+        
+        if ((Long.bitCount(occupancy) != 3) || (chessPosition.getCastlingRights() != 0)) {
+            
+            return UNKNOWN;
+            
+        }
+        
+        final long pieces = occupancy & ~chessPosition.getPieceBitboard(ChessPosition.piece(ChessPosition.WHITE, ChessPosition.KING))
+                & ~chessPosition.getPieceBitboard(ChessPosition.piece(ChessPosition.BLACK, ChessPosition.KING));
+        
+        if (Long.bitCount(pieces) != 1) {
+            
+            return UNKNOWN;
+            
+        }
+        
+        final int pieceSquare = Long.numberOfTrailingZeros(pieces);
+        
+        final int piece = chessPosition.getPiece(pieceSquare);
+        
+        final int strongColor = ChessPosition.pieceColor(piece);
+        
+        return probe(ChessPosition.pieceType(piece), strongColor == chessPosition.getSideToMove(),
+                chessPosition.getKingSquare(strongColor), chessPosition.getKingSquare(strongColor ^ 1), pieceSquare, strongColor);
+    }
+    
+    // Probe by squares as they stand on the board; the color of the strong side decides the mirroring
+    int probe(final int pieceType, final boolean strongToMove, final int strongKingSquare, final int weakKingSquare,
+            final int pieceSquare, final int strongColor) {
+        
+        final ByteBuffer table = tables[pieceType];
+        
+        if (table == null) {
+            
+            return UNKNOWN;
+            
+        }
+        
+        // Black pieces are looked up as white ones on the vertically mirrored board
+        
+        final int flip = (strongColor == ChessPosition.WHITE) ? 0 : 56;
+        
+        final int value = readValue(table, valueBits[pieceType],
+                index(strongToMove, strongKingSquare ^ flip, weakKingSquare ^ flip, pieceSquare ^ flip));
+        
+        if (value == 0) {
+            
+            return DRAW;
+            
+        }
+        
+        final int score = WIN - (value - 1);
+        
+        return strongToMove ? score : -score;
+    }
+    
+    // The move that keeps the best result for the side to move: the fastest mate when winning, the
+    // longest resistance when losing, any drawing move otherwise. ChessMove.NO_MOVE when the position is
+    // not covered or has no legal move.
+    public int findBestMove(final ChessPosition chessPosition) {
+        
+        if (probe(chessPosition) == UNKNOWN) {
+            
+            return ChessMove.NO_MOVE;
+            
+        }
+        
+        final var legalMoves = new int[ChessMove.MAX_MOVES];
+        
+        final int legalMoveCount = ChessMoveGenerator.generateLegalMoves(chessPosition, legalMoves, 0);
+        
+        final var successor = new ChessPosition();
+        
+        int bestMove = ChessMove.NO_MOVE;
+        
+        int bestScore = Integer.MIN_VALUE;
+        
+        for (int i = 0; i < legalMoveCount; i++) {
+            
+            successor.copyFrom(chessPosition);
+            
+            successor.makeMove(legalMoves[i]);
+            
+            int successorScore = probe(successor);
+            
+            if (successorScore == UNKNOWN) {
+                
+                // A capture of the last piece, or a promotion to a piece without a table
+                
+                successorScore = (Long.bitCount(successor.getOccupancy()) == 2) ? DRAW : UNKNOWN;
+                
+                if (successorScore == UNKNOWN) {
+                    
+                    continue;
+                    
+                }
+                
+            }
+            
+            final int score = -successorScore;
+            
+            if (score > bestScore) {
+                
+                bestScore = score;
+                
+                bestMove = legalMoves[i];
+                
+            }
+            
+        }
+        
+        return bestMove;
+    }
+    
+    public static boolean isWin(final int result) {
+        
+        return (result != UNKNOWN) && (result > DRAW);
+    }
+    
+    public static boolean isLoss(final int result) {
+        
+        return (result != UNKNOWN) && (result < DRAW);
+    }
+    
+    // Plies to mate of a win or loss
+    public static int getPliesToMate(final int result) {
+        
+        return WIN - Math.abs(result);
+    }
+    
+    static int index(final boolean strongToMove, final int strongKingSquare, final int weakKingSquare, final int pieceSquare) {
+        
+        return ((((strongToMove ? 0 : 1) * ChessPosition.SQUARE_COUNT + strongKingSquare) * ChessPosition.SQUARE_COUNT + weakKingSquare)
+                * ChessPosition.SQUARE_COUNT) + pieceSquare;
+    }
+    
+    // Packed values plus one spare long, so that every value can be read with two long reads
+    static int packedBytes(final int bits) {
+        
+        return (int) ((((long) POSITION_COUNT * bits + 63L) >>> 6) + 1L) * Long.BYTES;
+    }
+    
+    static int readValue(final ByteBuffer table, final int bits, final int index) {
+        
+        final long bitIndex = (long) index * bits;
+        
+        final int offset = (int) bitIndex & 63;
+        
+        final int wordOffset = HEADER_BYTES + (int) (bitIndex >>> 6) * Long.BYTES;
+        
+        long word = table.getLong(wordOffset) >>> offset;
+        
+        if ((offset + bits) > 64) {
+            
+            word |= table.getLong(wordOffset + Long.BYTES) << (64 - offset);
+            
+        }
+        
+        return (int) word & ((1 << bits) - 1);
+    }
+    
+}
\ No newline at end of file
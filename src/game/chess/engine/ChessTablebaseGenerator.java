@@ -0,0 +1,470 @@
+package game.chess.engine;
+
+import game.chess.ChessAttacks;
+import game.chess.ChessPosition;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+public final class ChessTablebaseGenerator {
+    
+    // Retrograde analysis, one ply of distance at a time. Pass n settles every position that is mated in
+    // exactly n plies: for odd n the strong side to move wins if some move reaches a position lost in n - 1,
+    // for even n the weak side to move loses if every move reaches a win and the longest of them is n - 1.
+    // A pass only writes positions of one side to move and only reads the other, so its slices can run
+    // on all cores without coordination. Whatever is left when passes stop finding positions is a draw.
+    
+    // Values during generation: unsettled, illegal, a settled draw, or plies to mate plus one
+    private static final byte UNSETTLED = 0;
+    
+    private static final byte ILLEGAL = (byte) 0xFF;
+    
+    private static final byte SETTLED_DRAW = (byte) 0xFE;
+    
+    private static final int MAX_VALUE = 0xFD;
+    
+    // Positions per task
+    private static final int SLICE_SIZE = 1 << 12;
+    
+    private final int pieceType;
+    
+    private final int piece;
+    
+    private final ChessTablebase promotionTablebase;
+    
+    private final byte[] values = new byte[ChessTablebase.POSITION_COUNT];
+    
+    // Plies to mate plus one of the longest win reached by promoting, which passes have to get past
+    private int maxPromotionValue = 0;
+    
+    private ChessTablebaseGenerator(final int pieceType, final ChessTablebase promotionTablebase) {
+        
+        if ((pieceType < ChessPosition.PAWN) || (pieceType >= ChessPosition.KING)) {
+            
+            throw new IllegalArgumentException("tablebase piece must be a pawn, knight, bishop, rook or queen");
+            
+        }
+        
+        if ((pieceType == ChessPosition.PAWN)
+                && ((promotionTablebase == null) || !promotionTablebase.hasTable(ChessPosition.QUEEN)
+                || !promotionTablebase.hasTable(ChessPosition.ROOK))) {
+            
+            throw new IllegalArgumentException("the pawn table needs the queen and rook tables for promotions");
+            
+        }
+        
+        this.pieceType = pieceType;
+        
+        this.piece = ChessPosition.piece(ChessPosition.WHITE, pieceType);
+        
+        this.promotionTablebase = promotionTablebase;
+        
+    }
+    
+    @SuppressWarnings("serial")
+    private final class PassTask
+            extends RecursiveTask<Integer> {
+        
+        private final int pass;
+        
+        private final int start;
+        
+        private final int end;
+        
+        private PassTask(final int pass, final int start, final int end) {
+            
+            this.pass = pass;
+            
+            this.start = start;
+            
+            this.end = end;
+            
+        }
+        
+        @Override
+        protected Integer compute() {
+            
+            if ((end - start) > SLICE_SIZE) {
+                
+                final int middle = (start + end) >>> 1;
+                
+                final var right = new PassTask(pass, middle, end);
+                
+                right.fork();
+                
+                return new PassTask(pass, start, middle).compute() + right.join();
+                
+            }
+            
+            return runPass(pass, start, end);
+        }
+        
+    }
+    
+    // Generates the table for white king and piece against black king. The pawn table needs the queen and
+    // rook tables in the promotion tablebase.
+    public static ByteBuffer generate(final int pieceType, final ChessTablebase promotionTablebase, final ForkJoinPool forkJoinPool) {
+        
+        final var generator = new ChessTablebaseGenerator(pieceType, promotionTablebase);
+        
+        final int half = ChessTablebase.POSITION_COUNT / 2;
+        
+        // Pass 0 marks illegal positions, mates, stalemates and positions where the lone king can take the piece
+        
+        forkJoinPool.invoke(generator.new PassTask(0, 0, ChessTablebase.POSITION_COUNT));
+        
+        int idlePasses = 0;
+        
+        for (int pass = 1; (pass <= MAX_VALUE) && ((idlePasses < 2) || (pass <= generator.maxPromotionValue + 1)); pass++) {
+            
+            // Odd passes settle positions with the strong side to move, even passes the others
+            
+            final int start = ((pass & 1) == 1) ? 0 : half;
+            
+            final int settled = forkJoinPool.invoke(generator.new PassTask(pass, start, start + half));
+            
+            idlePasses = (settled == 0) ? (idlePasses + 1) : 0;
+            
+        }
+        
+        return generator.pack();
+    }
+    
+    private int runPass(final int pass, final int start, final int end) {
+        
+        int settled = 0;
+        
+        for (int index = start; index < end; index++) {
+            
+            if (pass == 0) {
+                
+                values[index] = initialValue(index);
+                
+                if (values[index] == 1) {
+                    
+                    settled++;
+                    
+                }
+                
+            } else if ((values[index] == UNSETTLED) && settle(index, pass)) {
+                
+                values[index] = (byte) (pass + 1);
+                
+                settled++;
+                
+            }
+            
+        }
+        
+        return settled;
+    }
+    
+    private byte initialValue(final int index) {
+        
+        final boolean strongToMove = index < (ChessTablebase.POSITION_COUNT / 2);
+        
+        final int strongKingSquare = (index >>> 12) & 63;
+        final int weakKingSquare = (index >>> 6) & 63;
+        final int pieceSquare = index & 63;
+        
+        final long strongKing = 1L << strongKingSquare;
+        final long weakKing = 1L << weakKingSquare;
+        final long pieceBit = 1L << pieceSquare;
+        
+        if ((strongKingSquare == weakKingSquare) || (strongKingSquare == pieceSquare) || (weakKingSquare == pieceSquare)
+                || ((ChessAttacks.kingAttacks(strongKingSquare) & weakKing) != 0L)
+                || ((pieceType == ChessPosition.PAWN) && ((ChessPosition.squareY(pieceSquare) == 0) || (ChessPosition.squareY(pieceSquare) == 7)))) {
+            
+            return ILLEGAL;
+            
+        }
+        
+        final long pieceAttacks = ChessAttacks.attacks(piece, pieceSquare, strongKing | weakKing);
+        
+        if (strongToMove) {
+            
+            // The lone king can't be left in check with the other side to move
+            
+            return ((pieceAttacks & weakKing) != 0L) ? ILLEGAL : UNSETTLED;
+            
+        }
+        
+        final long escapes = weakKingMoves(strongKingSquare, weakKingSquare, pieceSquare);
+        
+        if ((escapes & pieceBit) != 0L) {
+            
+            // Taking the piece leaves bare kings
+            
+            return SETTLED_DRAW;
+            
+        }
+        
+        if (escapes == 0L) {
+            
+            return ((pieceAttacks & weakKing) != 0L) ? (byte) 1 : SETTLED_DRAW;
+            
+        }
+        
+        return UNSETTLED;
+    }
+    
+    // Squares the lone king can step to, including the piece's square when the strong king doesn't guard it
+    private long weakKingMoves(final int strongKingSquare, final int weakKingSquare, final int pieceSquare) {
+        
+        // The lone king doesn't block the piece's line away from itself
+        
+        final long attacked = ChessAttacks.kingAttacks(strongKingSquare) | ChessAttacks.attacks(piece, pieceSquare, 1L << strongKingSquare);
+        
+        return ChessAttacks.kingAttacks(weakKingSquare) & ~attacked;
+    }
+    
+    private boolean settle(final int index, final int pass) {
+        
+        final int strongKingSquare = (index >>> 12) & 63;
+        final int weakKingSquare = (index >>> 6) & 63;
+        final int pieceSquare = index & 63;
+        
+        if ((pass & 1) == 1) {
+            
+            return strongSideWins(strongKingSquare, weakKingSquare, pieceSquare, pass);
+            
+        }
+        
+        // Lost when every escape runs into a win settled in an earlier pass, the longest in the last one
+        
+        int longest = 0;
+        
+        for (long escapes = weakKingMoves(strongKingSquare, weakKingSquare, pieceSquare); escapes != 0L; escapes &= escapes - 1) {
+            
+            final int value = values[ChessTablebase.index(true, strongKingSquare, Long.numberOfTrailingZeros(escapes), pieceSquare)] & 0xFF;
+            
+            if ((value == UNSETTLED) || (value > MAX_VALUE)) {
+                
+                return false;
+                
+            }
+            
+            longest = Math.max(longest, value);
+            
+        }
+        
+        return longest == pass;
+    }
+    
+    // Whether some move reaches a position lost in pass - 1 plies, whose stored value is pass
+    private boolean strongSideWins(final int strongKingSquare, final int weakKingSquare, final int pieceSquare, final int pass) {
+        
+        final long strongKing = 1L << strongKingSquare;
+        final long weakKing = 1L << weakKingSquare;
+        final long pieceBit = 1L << pieceSquare;
+        
+        final long occupancy = strongKing | weakKing | pieceBit;
+        
+        for (long targets = ChessAttacks.kingAttacks(strongKingSquare) & ~ChessAttacks.kingAttacks(weakKingSquare) & ~pieceBit;
+                targets != 0L; targets &= targets - 1) {
+            
+            if ((values[ChessTablebase.index(false, Long.numberOfTrailingZeros(targets), weakKingSquare, pieceSquare)] & 0xFF) == pass) {
+                
+                return true;
+                
+            }
+            
+        }
+        
+        if (pieceType != ChessPosition.PAWN) {
+            
+            for (long targets = ChessAttacks.attacks(piece, pieceSquare, occupancy) & ~occupancy; targets != 0L; targets &= targets - 1) {
+                
+                if ((values[ChessTablebase.index(false, strongKingSquare, weakKingSquare, Long.numberOfTrailingZeros(targets))] & 0xFF) == pass) {
+                    
+                    return true;
+                    
+                }
+                
+            }
+            
+            return false;
+            
+        }
+        
+        // White pawns move toward row 0 and promote there
+        
+        final int pushSquare = pieceSquare - 8;
+        
+        if ((occupancy & (1L << pushSquare)) != 0L) {
+            
+            return false;
+            
+        }
+        
+        if (ChessPosition.squareY(pushSquare) == 0) {
+            
+            return promotionWins(ChessPosition.QUEEN, strongKingSquare, weakKingSquare, pushSquare, pass)
+                    || promotionWins(ChessPosition.ROOK, strongKingSquare, weakKingSquare, pushSquare, pass);
+            
+        }
+        
+        if ((values[ChessTablebase.index(false, strongKingSquare, weakKingSquare, pushSquare)] & 0xFF) == pass) {
+            
+            return true;
+            
+        }
+        
+        final int doublePushSquare = pieceSquare - 16;
+        
+        return (ChessPosition.squareY(pieceSquare) == 6)
+                && ((occupancy & (1L << doublePushSquare)) == 0L)
+                && ((values[ChessTablebase.index(false, strongKingSquare, weakKingSquare, doublePushSquare)] & 0xFF) == pass);
+    }
+    
+    private boolean promotionWins(final int promotionType, final int strongKingSquare, final int weakKingSquare, final int square,
+            final int pass) {
+        
+        final int result = promotionTablebase.probe(promotionType, false, strongKingSquare, weakKingSquare, square, ChessPosition.WHITE);
+        
+        if (!ChessTablebase.isLoss(result)) {
+            
+            return false;
+            
+        }
+        
+        final int value = ChessTablebase.getPliesToMate(result) + 1;
+        
+        synchronized (this) {
+            
+            maxPromotionValue = Math.max(maxPromotionValue, value);
+            
+        }
+        
+        return value == pass;
+    }
+    
+    // Bit-packs the values with as few bits as the longest mate needs
+    private ByteBuffer pack() {
+        
+        int maxValue = 1;
+        
+        for (final byte value : values) {
+            
+            if ((value & 0xFF) <= MAX_VALUE) {
+                
+                maxValue = Math.max(maxValue, value & 0xFF);
+                
+            }
+            
+        }
+        
+        final int bits = 32 - Integer.numberOfLeadingZeros(maxValue);
+        
+        final ByteBuffer buffer = ByteBuffer.allocate(ChessTablebase.HEADER_BYTES + ChessTablebase.packedBytes(bits));
+        
+        buffer.putInt(ChessTablebase.MAGIC);
+        buffer.put((byte) ChessTablebase.VERSION);
+        buffer.put((byte) pieceType);
+        buffer.put((byte) bits);
+        buffer.put((byte) 0);
+        buffer.putInt(ChessTablebase.POSITION_COUNT);
+        buffer.putInt(0);
+        
+        long word = 0L;
+        
+        int wordBits = 0;
+        
+        for (final byte value : values) {
+            
+            // Draws, illegal and never settled positions all read as 0
+            
+            final long packedValue = ((value & 0xFF) <= MAX_VALUE) ? (value & 0xFF) : 0L;
+            
+            word |= packedValue << wordBits;
+            
+            wordBits += bits;
+            
+            if (wordBits >= 64) {
+                
+                buffer.putLong(word);
+                
+                wordBits -= 64;
+                
+                word = (wordBits == 0) ? 0L : (packedValue >>> (bits - wordBits));
+                
+            }
+            
+        }
+        
+        if (wordBits > 0) {
+            
+            buffer.putLong(word);
+            
+        }
+        
+        // Zeros up to the spare long
+        
+        buffer.position(buffer.capacity());
+        
+        buffer.flip();
+        
+        return buffer;
+    }
+    
+    public static void write(final ByteBuffer table, final Path path) throws IOException {
+        
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            
+            final ByteBuffer buffer = table.duplicate();
+            
+            buffer.rewind();
+            
+            while (buffer.hasRemaining()) {
+                
+                channel.write(buffer);
+                
+            }
+            
+        }
+        
+    }
+    
+    // Generates the queen, rook and pawn tables into the directory, the pawn table last since it promotes
+    // into the other two. Usage: ChessTablebaseGenerator <directory> [threads]
+    public static void main(final String[] args) throws IOException {
+        
+        final Path directory = Path.of((args.length > 0) ? args[0] : ".");
+        
+        final int threads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        
+        Files.createDirectories(directory);
+        
+        final var forkJoinPool = new ForkJoinPool(threads);
+        
+        final var chessTablebase = new ChessTablebase();
+        
+        for (final int pieceType : new int[] {ChessPosition.QUEEN, ChessPosition.ROOK, ChessPosition.PAWN}) {
+            
+            final long startTime = System.nanoTime();
+            
+            final ByteBuffer table = generate(pieceType, chessTablebase, forkJoinPool);
+            
+            final Path path = directory.resolve(ChessTablebase.fileName(pieceType));
+            
+            write(table, path);
+            
+            chessTablebase.load(path);
+            
+            System.out.printf("%s: %,d bytes, %d bits per position, %.2f s%n", path, table.capacity(), table.get(6),
+                    (System.nanoTime() - startTime) / 1e9);
+            
+        }
+        
+        forkJoinPool.shutdown();
+        
+    }
+    
+}
\ No newline at end of file
@@ -0,0 +1,750 @@
+package game.chess.engine;
+
+import game.chess.ChessGameRecord;
+import game.chess.ChessGameStatus;
+import game.chess.ChessMove;
+import game.chess.ChessMoveGenerator;
+import game.chess.ChessPosition;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class ChessTournament {
+    
+    // Headless engine-against-engine match between two search settings, for testing engine changes.
+    // Every worker thread plays whole games on its own searches and transposition tables, so workers
+    // share nothing but the result tally and the output file, and throughput grows with the worker count.
+    //
+    // Games come in pairs over the same random opening with colors swapped. Results are from the point of
+    // view of the first player and are tested with a sequential probability ratio test (SPRT) of
+    // elo0 against elo1; the match stops early once the test accepts either hypothesis.
+    
+    public static final int DEFAULT_GAMES = 1_000;
+    
+    public static final int DEFAULT_OPENING_PLIES = 8;
+    
+    // Games still going after this many plies are scored as draws
+    public static final int DEFAULT_MAX_PLIES = 400;
+    
+    public static final long DEFAULT_MOVE_TIME_MILLIS = 100L;
+    
+    public static final int DEFAULT_TRANSPOSITION_TABLE_MEGABYTES = 16;
+    
+    // Search settings of one side of the match
+    public record Player(String name, int maxDepth, long moveTimeMillis, int transpositionTableMegabytes) {
+        
+        public Player {
+            
+            if ((maxDepth < 1) || (maxDepth > ChessSearch.MAX_PLY)) {
+                
+                throw new IllegalArgumentException("maximum depth must be between 1 and " + ChessSearch.MAX_PLY);
+                
+            }
+            
+            if (moveTimeMillis < 0L) {
+                
+                throw new IllegalArgumentException("move time cannot be negative");
+                
+            }
+            
+            if ((maxDepth == ChessSearch.MAX_PLY) && (moveTimeMillis == 0L)) {
+                
+                throw new IllegalArgumentException("a player needs a depth or a time limit");
+                
+            }
+            
+        }
+        
+        public Player(final String name, final long moveTimeMillis) {
+            
+            this(name, ChessSearch.MAX_PLY, moveTimeMillis, DEFAULT_TRANSPOSITION_TABLE_MEGABYTES);
+            
+        }
+        
+    }
+    
+    // Wins, draws and losses of the first player
+    public record Score(int wins, int draws, int losses) {
+        
+        // Games added to each outcome for the likelihood ratio
+        private static final double PSEUDO_COUNT = 0.5;
+        
+        public int getGames() {
+            
+            return wins + draws + losses;
+        }
+        
+        // Points per game, between 0 and 1
+        public double getScore() {
+            
+            final int games = getGames();
+            
+            return (games == 0) ? 0.5 : ((wins + (draws * 0.5)) / games);
+        }
+        
+        // Variance of the points of a single game
+        public double getVariance() {
+            
+            final int games = getGames();
+            
+            if (games == 0) {
+                
+                return 0.0;
+                
+            }
+            
+            final double score = getScore();
+            
+            return ((wins * (1.0 - score) * (1.0 - score)) + (draws * (0.5 - score) * (0.5 - score)) + (losses * score * score)) / games;
+        }
+        
+        // Elo difference implied by the score; infinite after only wins or only losses
+        public double getElo() {
+            
+            return elo(getScore());
+        }
+        
+        // Half width of the 95% confidence interval of the Elo difference; infinite while the Elo is
+        public double getEloMargin() {
+            
+            final int games = getGames();
+            
+            final double score = getScore();
+            
+            if ((games == 0) || (score <= 0.0) || (score >= 1.0)) {
+                
+                return Double.POSITIVE_INFINITY;
+                
+            }
+            
+            final double deviation = 1.96 * Math.sqrt(getVariance() / games);
+            
+            return (elo(Math.min(1.0, score + deviation)) - elo(Math.max(0.0, score - deviation))) / 2.0;
+        }
+        
+        // Log-likelihood ratio of elo1 against elo0, with the normal approximation of the game results
+        // that fishtest uses for the generalized SPRT. Half a game is added to every outcome, so that
+        // all-win, all-draw and all-loss runs, whose observed variance is 0, still move the ratio.
+        public double getLogLikelihoodRatio(final double elo0, final double elo1) {
+            
+            final double regularizedWins = wins + PSEUDO_COUNT;
+            
+            final double regularizedDraws = draws + PSEUDO_COUNT;
+            
+            final double regularizedLosses = losses + PSEUDO_COUNT;
+            
+            final double games = regularizedWins + regularizedDraws + regularizedLosses;
+            
+            final double score = (regularizedWins + (regularizedDraws * 0.5)) / games;
+            
+            final double variance = ((regularizedWins * (1.0 - score) * (1.0 - score)) + (regularizedDraws * (0.5 - score) * (0.5 - score))
+                    + (regularizedLosses * score * score)) / games;
+            
+            final double score0 = expectedScore(elo0);
+            
+            final double score1 = expectedScore(elo1);
+            
+            return ((score1 - score0) * ((2.0 * score) - score0 - score1) * games) / (2.0 * variance);
+        }
+        
+        Score add(final ChessGameRecord.Result result, final boolean firstIsWhite) {
+            
+            return switch (result) {
+                
+                case DRAW -> new Score(wins, draws + 1, losses);
+                
+                case WHITE_WINS -> firstIsWhite ? new Score(wins + 1, draws, losses) : new Score(wins, draws, losses + 1);
+                
+                case BLACK_WINS -> firstIsWhite ? new Score(wins, draws, losses + 1) : new Score(wins + 1, draws, losses);
+                
+                default -> this;
+            };
+        }
+        
+        @Override
+        public String toString() {
+            
+            final double elo = getElo();
+            
+            if (Double.isInfinite(elo)) {
+                
+                return String.format("+%d =%d -%d  Elo %sinf", wins, draws, losses, (elo > 0.0) ? "+" : "-");
+                
+            }
+            
+            return String.format("+%d =%d -%d  Elo %.1f +/- %.1f", wins, draws, losses, elo + 0.0, getEloMargin());
+        }
+        
+    }
+    
+    public enum SprtResult {
+        
+        UNDECIDED("undecided"),
+        H0_ACCEPTED("H0 accepted"),
+        H1_ACCEPTED("H1 accepted");
+        
+        private final String displayName;
+        
+        SprtResult(final String displayName) {
+            
+            this.displayName = displayName;
+            
+        }
+        
+        public final String getDisplayName() {
+            
+            return displayName;
+        }
+        
+        @Override
+        public String toString() {
+            
+            return displayName;
+        }
+        
+    }
+    
+    public record Summary(Score score, double logLikelihoodRatio, SprtResult sprtResult, long elapsedNanos) {
+        
+        public double getGamesPerMinute() {
+            
+            return (elapsedNanos == 0L) ? 0.0 : (score.getGames() * 60e9 / elapsedNanos);
+        }
+        
+        @Override
+        public String toString() {
+            
+            return String.format("%,d games in %.1f s: %,.1f games/min, %s, LLR %.2f (%s)", score.getGames(), elapsedNanos / 1e9,
+                    getGamesPerMinute(), score, logLikelihoodRatio, sprtResult);
+        }
+        
+    }
+    
+    private final Player first;
+    
+    private final Player second;
+    
+    private int games = DEFAULT_GAMES;
+    
+    private int concurrency = Runtime.getRuntime().availableProcessors();
+    
+    private int openingPlies = DEFAULT_OPENING_PLIES;
+    
+    private int maxPlies = DEFAULT_MAX_PLIES;
+    
+    private long seed = System.nanoTime();
+    
+    // SPRT hypotheses and error rates
+    private double elo0 = 0.0;
+    
+    private double elo1 = 5.0;
+    
+    private double alpha = 0.05;
+    
+    private double beta = 0.05;
+    
+    // Openings are drawn from the book first when there is one; null for random moves only
+    private ChessOpeningBook openingBook;
+    
+    // Shared by both players; null for none
+    private ChessTablebase tablebase;
+    
+    // Finished games are appended here as game records; null to keep no games
+    private Path outputPath;
+    
+    // Match state while running
+    
+    private final AtomicInteger nextGame = new AtomicInteger();
+    
+    private volatile boolean stopped;
+    
+    private Score score;
+    
+    private SprtResult sprtResult;
+    
+    private FileChannel output;
+    
+    private PrintStream out;
+    
+    public ChessTournament(final Player first, final Player second) {
+        
+        this.first = first;
+        
+        this.second = second;
+        
+    }
+    
+    public int getGames() {
+        
+        return games;
+    }
+    
+    // Rounded up to an even number, so every opening is played with both colors
+    public void setGames(final int games) {
+        
+        if (games < 1) {
+            
+            throw new IllegalArgumentException("game count must be at least 1");
+            
+        }
+        
+        this.games = games + (games & 1);
+        
+    }
+    
+    public int getConcurrency() {
+        
+        return concurrency;
+    }
+    
+    // Number of games played at the same time, one per worker thread
+    public void setConcurrency(final int concurrency) {
+        
+        if ((concurrency < 1) || (concurrency > ChessEngine.MAX_THREADS)) {
+            
+            throw new IllegalArgumentException("concurrency must be between 1 and " + ChessEngine.MAX_THREADS);
+            
+        }
+        
+        this.concurrency = concurrency;
+        
+    }
+    
+    public int getOpeningPlies() {
+        
+        return openingPlies;
+    }
+    
+    public void setOpeningPlies(final int openingPlies) {
+        
+        if (openingPlies < 0) {
+            
+            throw new IllegalArgumentException("opening plies cannot be negative");
+            
+        }
+        
+        this.openingPlies = openingPlies;
+        
+    }
+    
+    public int getMaxPlies() {
+        
+        return maxPlies;
+    }
+    
+    public void setMaxPlies(final int maxPlies) {
+        
+        if (maxPlies < 1) {
+            
+            throw new IllegalArgumentException("maximum plies must be at least 1");
+            
+        }
+        
+        this.maxPlies = maxPlies;
+        
+    }
+    
+    public long getSeed() {
+        
+        return seed;
+    }
+    
+    // Seed of the random openings; the same seed plays the same openings
+    public void setSeed(final long seed) {
+        
+        this.seed = seed;
+        
+    }
+    
+    public void setSprt(final double elo0, final double elo1, final double alpha, final double beta) {
+        
+        if (elo1 <= elo0) {
+            
+            throw new IllegalArgumentException("elo1 must be greater than elo0");
+            
+        }
+        
+        if ((alpha <= 0.0) || (alpha >= 0.5) || (beta <= 0.0) || (beta >= 0.5)) {
+            
+            throw new IllegalArgumentException("error rates must be between 0 and 0.5");
+            
+        }
+        
+        this.elo0 = elo0;
+        this.elo1 = elo1;
+        this.alpha = alpha;
+        this.beta = beta;
+        
+    }
+    
+    // The test accepts H0 (elo0) below this log-likelihood ratio
+    public double getLowerBound() {
+        
+        return Math.log(beta / (1.0 - alpha));
+    }
+    
+    // The test accepts H1 (elo1) above this log-likelihood ratio
+    public double getUpperBound() {
+        
+        return Math.log((1.0 - beta) / alpha);
+    }
+    
+    public ChessOpeningBook getOpeningBook() {
+        
+        return openingBook;
+    }
+    
+    public void setOpeningBook(final ChessOpeningBook openingBook) {
+        
+        this.openingBook = openingBook;
+        
+    }
+    
+    public ChessTablebase getTablebase() {
+        
+        return tablebase;
+    }
+    
+    public void setTablebase(final ChessTablebase tablebase) {
+        
+        this.tablebase = tablebase;
+        
+    }
+    
+    public Path getOutputPath() {
+        
+        return outputPath;
+    }
+    
+    public void setOutputPath(final Path outputPath) {
+        
+        this.outputPath = outputPath;
+        
+    }
+    
+    // Plays the match on the calling thread and the workers, printing a line per finished game.
+    // Games already running when the SPRT decides are played out and counted.
+    public Summary run(final PrintStream out) throws IOException {
+        
+        nextGame.set(0);
+        
+        stopped = false;
+        
+        score = new Score(0, 0, 0);
+        
+        sprtResult = SprtResult.UNDECIDED;
+        
+        this.out = out;
+        
+        final int workerCount = Math.min(concurrency, games);
+        
+        final AtomicInteger workerThreadCount = new AtomicInteger();
+        
+        final ExecutorService executor = Executors.newFixedThreadPool(workerCount, runnable -> {
+            
+            final var thread = new Thread(runnable, "chess-tournament-" + workerThreadCount.incrementAndGet());
+            
+            thread.setDaemon(true);
+            
+            return thread;
+        });
+        
+        final long startNanos = System.nanoTime();
+        
+        try (FileChannel channel = (outputPath == null) ? null : FileChannel.open(outputPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            
+            output = channel;
+            
+            for (int i = 0; i < workerCount; i++) {
+                
+                executor.execute(new Worker()::run);
+                
+            }
+            
+            executor.shutdown();
+            
+            while (!executor.awaitTermination(1L, TimeUnit.SECONDS)) {
+                
+                // Keep waiting; workers stop on their own
+                
+            }
+            
+        } catch (final InterruptedException interruptedException) {
+            
+            stopped = true;
+            
+            executor.shutdownNow();
+            
+            Thread.currentThread().interrupt();
+            
+        } finally {
+            
+            output = null;
+            
+        }
+        
+        synchronized (this) {
+            
+            return new Summary(score, score.getLogLikelihoodRatio(elo0, elo1), sprtResult, System.nanoTime() - startNanos);
+        }
+    }
+    
+    // Called by the workers for every finished game
+    private synchronized void finishGame(final int game, final ChessGameRecord chessGameRecord, final ChessGameStatus gameStatus,
+            final boolean firstIsWhite) {
+        
+        score = score.add(chessGameRecord.getResult(), firstIsWhite);
+        
+        final double logLikelihoodRatio = score.getLogLikelihoodRatio(elo0, elo1);
+        
+        if (sprtResult == SprtResult.UNDECIDED) {
+            
+            if (logLikelihoodRatio >= getUpperBound()) {
+                
+                sprtResult = SprtResult.H1_ACCEPTED;
+                
+            } else if (logLikelihoodRatio <= getLowerBound()) {
+                
+                sprtResult = SprtResult.H0_ACCEPTED;
+                
+            }
+            
+            stopped = sprtResult != SprtResult.UNDECIDED;
+            
+        }
+        
+        if (output != null) {
+            
+            try {
+                
+                chessGameRecord.write(output);
+                
+            } catch (final IOException ioException) {
+                
+                out.println("Cannot write game " + (game + 1) + ": " + ioException.getMessage());
+                
+                stopped = true;
+                
+            }
+            
+        }
+        
+        out.printf("Game %d: %s vs %s %s (%s, %d plies)  %s  LLR %.2f [%.2f, %.2f]%n", game + 1,
+                firstIsWhite ? first.name() : second.name(), firstIsWhite ? second.name() : first.name(), chessGameRecord.getResult(),
+                (gameStatus == ChessGameStatus.ONGOING) ? "adjudicated" : gameStatus.getDisplayName(), chessGameRecord.getPlyCount(),
+                score, logLikelihoodRatio, getLowerBound(), getUpperBound());
+        
+    }
+    
+    // Plays the first plies of the game from the book or at random. Both games of a pair get the same
+    // opening, and openings that end the game are drawn again.
+    private void playOpening(final ChessPosition chessPosition, final int pair, final int[] legalMoves) {
+        
+        final var random = new SplittableRandom(seed ^ (pair * 0x9E3779B97F4A7C15L));
+        
+        do {
+            
+            chessPosition.copyFrom(ChessPosition.startPosition());
+            
+            for (int ply = 0; (ply < openingPlies) && ChessMoveGenerator.hasLegalMove(chessPosition); ply++) {
+                
+                int move = (openingBook == null) ? ChessMove.NO_MOVE : openingBook.selectMove(chessPosition, random);
+                
+                if (move == ChessMove.NO_MOVE) {
+                    
+                    move = legalMoves[random.nextInt(ChessMoveGenerator.generateLegalMoves(chessPosition, legalMoves, 0))];
+                    
+                }
+                
+                chessPosition.makeMove(move);
+                
+            }
+            
+        } while (ChessGameStatus.of(chessPosition).isGameOver());
+        
+    }
+    
+    private final class Worker {
+        
+        private final ChessTranspositionTable firstTranspositionTable = new ChessTranspositionTable(first.transpositionTableMegabytes());
+        
+        private final ChessTranspositionTable secondTranspositionTable = new ChessTranspositionTable(second.transpositionTableMegabytes());
+        
+        private final ChessSearch firstSearch = new ChessSearch(firstTranspositionTable);
+        
+        private final ChessSearch secondSearch = new ChessSearch(secondTranspositionTable);
+        
+        private final ChessPosition chessPosition = new ChessPosition();
+        
+        private final int[] legalMoves = new int[ChessMove.MAX_MOVES];
+        
+        private void run() {
+            
+            firstSearch.setTablebase(tablebase);
+            
+            secondSearch.setTablebase(tablebase);
+            
+            for (int game = nextGame.getAndIncrement(); (game < games) && !stopped; game = nextGame.getAndIncrement()) {
+                
+                playGame(game);
+                
+            }
+            
+        }
+        
+        private void playGame(final int game) {
+            
+            final boolean firstIsWhite = (game & 1) == 0;
+            
+            playOpening(chessPosition, game >>> 1, legalMoves);
+            
+            firstTranspositionTable.clear();
+            
+            secondTranspositionTable.clear();
+            
+            ChessGameStatus gameStatus;
+            
+            while (!(gameStatus = ChessGameStatus.of(chessPosition)).isGameOver() && (chessPosition.getMoveCount() < maxPlies)) {
+                
+                final boolean firstToMove = (chessPosition.getSideToMove() == ChessPosition.WHITE) == firstIsWhite;
+                
+                final Player player = firstToMove ? first : second;
+                
+                (firstToMove ? firstTranspositionTable : secondTranspositionTable).newSearch();
+                
+                final int move = (firstToMove ? firstSearch : secondSearch).search(chessPosition, player.maxDepth(), player.moveTimeMillis());
+                
+                chessPosition.makeMove(move);
+                
+            }
+            
+            // Games cut off at the ply limit are scored as draws
+            
+            final ChessGameRecord.Result result = gameStatus.isGameOver() ? ChessGameRecord.Result.of(chessPosition)
+                    : ChessGameRecord.Result.DRAW;
+            
+            finishGame(game, ChessGameRecord.of(chessPosition, ChessGameRecord.DEFAULT_CHECKPOINT_INTERVAL, result), gameStatus,
+                    firstIsWhite);
+            
+        }
+        
+    }
+    
+    // Expected score of a player that much stronger
+    private static double expectedScore(final double elo) {
+        
+        return 1.0 / (1.0 + Math.pow(10.0, -elo / 400.0));
+    }
+    
+    private static double elo(final double score) {
+        
+        return -400.0 * Math.log10((1.0 / score) - 1.0);
+    }
+    
+    // Usage: ChessTournament [--option value]...
+    //   --games, --concurrency, --time (ms per move for both), --time1, --time2, --depth1, --depth2, --hash (MB per player),
+    //   --opening-plies, --max-plies, --seed, --elo0, --elo1, --alpha, --beta, --book <file>, --tablebase <dir>, --out <file>
+    public static void main(final String[] args) throws IOException {
+        
+        final Map<String, String> options = new HashMap<>();
+        
+        for (int i = 0; i < args.length; i += 2) {
+            
+            if (!args[i].startsWith("--") || ((i + 1) == args.length)) {
+                
+                throw new IllegalArgumentException("usage: ChessTournament [--option value]..., got " + args[i]);
+                
+            }
+            
+            options.put(args[i].substring(2), args[i + 1]);
+            
+        }
+        
+        final long time = Long.parseLong(options.getOrDefault("time", Long.toString(DEFAULT_MOVE_TIME_MILLIS)));
+        
+        final int hash = Integer.parseInt(options.getOrDefault("hash", Integer.toString(DEFAULT_TRANSPOSITION_TABLE_MEGABYTES)));
+        
+        final var first = new Player("first", Integer.parseInt(options.getOrDefault("depth1", Integer.toString(ChessSearch.MAX_PLY))),
+                Long.parseLong(options.getOrDefault("time1", Long.toString(time))), hash);
+        
+        final var second = new Player("second", Integer.parseInt(options.getOrDefault("depth2", Integer.toString(ChessSearch.MAX_PLY))),
+                Long.parseLong(options.getOrDefault("time2", Long.toString(time))), hash);
+        
+        final var tournament = new ChessTournament(first, second);
+        
+        if (options.containsKey("games")) {
+            
+            tournament.setGames(Integer.parseInt(options.get("games")));
+            
+        }
+        
+        if (options.containsKey("concurrency")) {
+            
+            tournament.setConcurrency(Integer.parseInt(options.get("concurrency")));
+            
+        }
+        
+        if (options.containsKey("opening-plies")) {
+            
+            tournament.setOpeningPlies(Integer.parseInt(options.get("opening-plies")));
+            
+        }
+        
+        if (options.containsKey("max-plies")) {
+            
+            tournament.setMaxPlies(Integer.parseInt(options.get("max-plies")));
+            
+        }
+        
+        if (options.containsKey("seed")) {
+            
+            tournament.setSeed(Long.parseLong(options.get("seed")));
+            
+        }
+        
+        tournament.setSprt(Double.parseDouble(options.getOrDefault("elo0", "0")), Double.parseDouble(options.getOrDefault("elo1", "5")),
+                Double.parseDouble(options.getOrDefault("alpha", "0.05")), Double.parseDouble(options.getOrDefault("beta", "0.05")));
+        
+        if (options.containsKey("book")) {
+            
+            tournament.setOpeningBook(ChessOpeningBook.open(Path.of(options.get("book"))));
+            
+        }
+        
+        if (options.containsKey("tablebase")) {
+            
+            tournament.setTablebase(ChessTablebase.open(Path.of(options.get("tablebase"))));
+            
+        }
+        
+        if (options.containsKey("out")) {
+            
+            tournament.setOutputPath(Path.of(options.get("out")));
+            
+        }
+        
+        System.out.println("First: " + first);
+        System.out.println("Second: " + second);
+        System.out.println("Games: " + tournament.getGames() + ", concurrency " + tournament.getConcurrency() + ", seed "
+                + tournament.getSeed());
+        System.out.println();
+        
+        final Summary summary = tournament.run(System.out);
+        
+        System.out.println();
+        System.out.println(summary);
+        
+    }
+    
+}
\ No newline at end of file
@@ -0,0 +1,263 @@
+package game.chess.engine;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class ChessTranspositionTable {
+    
+    public static final int BOUND_UPPER = 1;
+    
+    public static final int BOUND_LOWER = 2;
+    
+    public static final int BOUND_EXACT = 3;
+    
+    // Returned by probe when the key is not in the table
+    public static final long NO_ENTRY = 0L;
+    
+    // Entries are two longs, (key ^ data) and data, grouped in buckets of four (one 64 byte cache line).
+    // A reader that sees halves of two different writes fails the key check, so no locking is needed.
+    
+    private static final int LONGS_PER_ENTRY = 2;
+    
+    private static final int ENTRIES_PER_BUCKET = 4;
+    
+    private static final int LONGS_PER_BUCKET = LONGS_PER_ENTRY * ENTRIES_PER_BUCKET;
+    
+    private static final int BYTES_PER_BUCKET = Long.BYTES * LONGS_PER_BUCKET;
+    
+    private static final int AGE_MASK = 0x3F;
+    
+    // Opaque access keeps every long read and write atomic without ordering fences
+    private static final VarHandle TABLE = MethodHandles.arrayElementVarHandle(long[].class);
+    
+    private final long[] table;
+    
+    private final int bucketMask;
+    
+    private volatile int age;
+    
+    private final LongAdder probes = new LongAdder();
+    
+    private final LongAdder hits = new LongAdder();
+    
+    private final LongAdder stores = new LongAdder();
+    
+    public ChessTranspositionTable(final int megabytes) {
+        
+        if ((megabytes < 1) || (megabytes > 16_384)) {
+            
+            throw new IllegalArgumentException("transposition table size must be between 1 and 16384 MB");
+            
+        }
+        
+        // Largest power of two number of buckets that fits in the budget
+        
+        final long bucketCount = Long.highestOneBit(((long) megabytes << 20) / BYTES_PER_BUCKET);
+        
+        final long longCount = bucketCount * LONGS_PER_BUCKET;
+        
+        if (longCount > (Integer.MAX_VALUE - 8)) {
+            
+            throw new IllegalArgumentException("transposition table size exceeds the maximum array length");
+            
+        }
+        
+        table = new long[(int) longCount];
+        
+        bucketMask = (int) (bucketCount - 1);
+        
+    }
+    
+    public int getMegabytes() {
+        
+        return (int) (((long) table.length * Long.BYTES) >>> 20);
+    }
+    
+    // Data layout: move (16 bits) | score (16) | depth (8) | bound (2) | age (6) | static evaluation (16)
+    
+    public static int getMove(final long data) {
+        
+        return (int) (data & 0xFFFF);
+    }
+    
+    public static int getScore(final long data) {
+        
+        return (short) (data >>> 16);
+    }
+    
+    public static int getDepth(final long data) {
+        
+        return (int) ((data >>> 32) & 0xFF);
+    }
+    
+    public static int getBound(final long data) {
+        
+        return (int) ((data >>> 40) & 3);
+    }
+    
+    private static int getAge(final long data) {
+        
+        return (int) ((data >>> 42) & AGE_MASK);
+    }
+    
+    public static int getEvaluation(final long data) {
+        
+        return (short) (data >>> 48);
+    }
+    
+    public void clear() {
+        
+        Arrays.fill(table, 0L);
+        
+        age = 0;
+        
+        probes.reset();
+        hits.reset();
+        stores.reset();
+        
+    }
+    
+    // Called once per search so that entries from earlier searches are replaced first.
+    public void newSearch() {
+        
+        age = (age + 1) & AGE_MASK;
+        
+    }
+    
+    public long probe(final long key) {
+        
+        probes.increment();
+        
+        final int bucket = bucketIndex(key);
+        
+        for (int i = bucket; i < (bucket + LONGS_PER_BUCKET); i += LONGS_PER_ENTRY) {
+            
+            final long data = (long) TABLE.getOpaque(table, i + 1);
+            
+            if (((((long) TABLE.getOpaque(table, i)) ^ data) == key) && (data != NO_ENTRY)) {
+                
+                hits.increment();
+                
+                return data;
+                
+            }
+            
+        }
+        
+        return NO_ENTRY;
+    }
+    
+    public void store(final long key, final int move, final int score, final int depth, final int bound, final int evaluation) {
+        
+        final int currentAge = age;
+        
+        final int bucket = bucketIndex(key);
+        
+        int replaceIndex = bucket;
+        
+        int replaceValue = Integer.MAX_VALUE;
+        
+        long previousData = NO_ENTRY;
+        
+        for (int i = bucket; i < (bucket + LONGS_PER_BUCKET); i += LONGS_PER_ENTRY) {
+            
+            final long data = (long) TABLE.getOpaque(table, i + 1);
+            
+            if ((((long) TABLE.getOpaque(table, i)) ^ data) == key) {
+                
+                // Same position: always overwrite, but keep a known best move
+                
+                replaceIndex = i;
+                
+                previousData = data;
+                
+                break;
+                
+            }
+            
+            // Prefer empty slots, then entries from older searches, then shallow entries
+            
+            final int value = (data == NO_ENTRY)
+                    ? Integer.MIN_VALUE
+                    : (getDepth(data) - (8 * ((currentAge - getAge(data)) & AGE_MASK)));
+            
+            if (value < replaceValue) {
+                
+                replaceValue = value;
+                
+                replaceIndex = i;
+                
+            }
+            
+        }
+        
+        final int storedMove = ((move == 0) && (previousData != NO_ENTRY)) ? getMove(previousData) : move;
+        
+        final long data = (storedMove & 0xFFFFL)
+                | ((score & 0xFFFFL) << 16)
+                | ((long) Math.max(0, Math.min(depth, 0xFF)) << 32)
+                | ((long) bound << 40)
+                | ((long) currentAge << 42)
+                | ((evaluation & 0xFFFFL) << 48);
+        
+        TABLE.setOpaque(table, replaceIndex, key ^ data);
+        TABLE.setOpaque(table, replaceIndex + 1, data);
+        
+        stores.increment();
+        
+    }
+    
+    private int bucketIndex(final long key) {
+        
+        return ((int) (key >>> 32) & bucketMask) * LONGS_PER_BUCKET;
+    }
+    
+    public long getProbeCount() {
+        
+        return probes.sum();
+    }
+    
+    public long getHitCount() {
+        
+        return hits.sum();
+    }
+    
+    public long getStoreCount() {
+        
+        return stores.sum();
+    }
+    
+    public double getHitRate() {
+        
+        final long probeCount = probes.sum();
+        
+        return (probeCount == 0L) ? 0.0 : ((double) hits.sum() / probeCount);
+    }
+    
+    // Permille of a sample of entries written during the current search (UCI "hashfull").
+    public int getHashFull() {
+        
+        final int sampleEntries = Math.min(1000, table.length / LONGS_PER_ENTRY);
+        
+        final int currentAge = age;
+        
+        int used = 0;
+        
+        for (int i = 0; i < sampleEntries; i++) {
+            
+            final long data = (long) TABLE.getOpaque(table, (i * LONGS_PER_ENTRY) + 1);
+            
+            if ((data != NO_ENTRY) && (getAge(data) == currentAge)) {
+                
+                used++;
+                
+            }
+            
+        }
+        
+        return (used * 1000) / sampleEntries;
+    }
+    
+}
\ No newline at end of file
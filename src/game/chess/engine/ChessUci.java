@@ -0,0 +1,573 @@
+package game.chess.engine;
+
+import game.chess.ChessFen;
+import game.chess.ChessMove;
+import game.chess.ChessMoveGenerator;
+import game.chess.ChessPosition;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+public final class ChessUci {
+    
+    // Universal Chess Interface front end over a pair of streams, normally stdin and stdout. Commands
+    // are read and answered on the calling thread while searches run on the engine thread and report
+    // through its info listener. stop only raises the flag the search checks at every node, so the
+    // best move follows within a fraction of a millisecond.
+    
+    public static final String ENGINE_NAME = "JavaFX-Chess";
+    
+    public static final String ENGINE_AUTHOR = "bn604";
+    
+    public static final int DEFAULT_HASH_MEGABYTES = 16;
+    
+    public static final int MAX_HASH_MEGABYTES = 16_384;
+    
+    // Kept back from the clock for each move, for the time the GUI needs to pass the move on
+    public static final long MOVE_OVERHEAD_MILLIS = 30L;
+    
+    // Moves left in the game assumed when the GUI does not say
+    private static final int DEFAULT_MOVES_TO_GO = 30;
+    
+    private final BufferedReader in;
+    
+    private final PrintStream out;
+    
+    private ChessEngine chessEngine;
+    
+    private final ChessPosition chessPosition = ChessPosition.startPosition();
+    
+    // Used on the input thread only
+    private final int[] legalMoves = new int[ChessMove.MAX_MOVES];
+    
+    // Search state, shared by the input thread and the engine thread and guarded by this
+    
+    private boolean searching;
+    
+    // An infinite search holds its best move back until stop
+    private boolean infinite;
+    
+    private boolean stopRequested;
+    
+    private int pendingBestMove = ChessMove.NO_MOVE;
+    
+    public ChessUci(final InputStream in, final PrintStream out) {
+        
+        this.in = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+        
+        this.out = out;
+        
+        chessEngine = newChessEngine(DEFAULT_HASH_MEGABYTES, ChessEngine.DEFAULT_THREADS);
+        
+    }
+    
+    // Reads commands until quit or the end of the input
+    public void run() throws IOException {
+        
+        try {
+            
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                
+                final String[] tokens = line.trim().split("\\s+");
+                
+                if (tokens[0].equals("quit")) {
+                    
+                    break;
+                    
+                }
+                
+                try {
+                    
+                    execute(tokens);
+                    
+                } catch (final IllegalArgumentException illegalArgumentException) {
+                    
+                    send("info string " + illegalArgumentException.getMessage());
+                    
+                }
+                
+            }
+            
+        } finally {
+            
+            chessEngine.shutdown();
+            
+        }
+        
+    }
+    
+    private void execute(final String[] tokens) {
+        
+        switch (tokens[0]) {
+            
+            case "uci" -> {
+                
+                send("id name " + ENGINE_NAME);
+                send("id author " + ENGINE_AUTHOR);
+                send("option name Hash type spin default " + DEFAULT_HASH_MEGABYTES + " min 1 max " + MAX_HASH_MEGABYTES);
+                send("option name Threads type spin default " + ChessEngine.DEFAULT_THREADS + " min 1 max " + ChessEngine.MAX_THREADS);
+                send("option name BookFile type string default <empty>");
+                send("option name TablebasePath type string default <empty>");
+                send("uciok");
+                
+            }
+            
+            case "isready" -> send("readyok");
+            
+            case "ucinewgame" -> {
+                
+                if (!isSearching()) {
+                    
+                    chessEngine.getTranspositionTable().clear();
+                    
+                }
+                
+            }
+            
+            case "setoption" -> setOption(tokens);
+            
+            case "position" -> setPosition(tokens);
+            
+            case "go" -> go(tokens);
+            
+            case "stop" -> stop();
+            
+            case "d" -> send(ChessFen.toFen(chessPosition));
+            
+            default -> {
+                
+                // Unknown commands are ignored, as the protocol asks
+                
+            }
+            
+        }
+        
+    }
+    
+    // setoption name <name> [value <value>]; names may contain spaces
+    private void setOption(final String[] tokens) {
+        
+        final List<String> words = Arrays.asList(tokens);
+        
+        final int valueIndex = words.indexOf("value");
+        
+        final String name = String.join(" ", words.subList(Math.min(2, tokens.length), (valueIndex < 0) ? tokens.length : valueIndex));
+        
+        final String value = (valueIndex < 0) ? "" : String.join(" ", words.subList(valueIndex + 1, tokens.length));
+        
+        if (isSearching()) {
+            
+            throw new IllegalArgumentException("options cannot change during a search");
+            
+        }
+        
+        switch (name.toLowerCase()) {
+            
+            case "hash" -> {
+                
+                final int megabytes = parseInt(value);
+                
+                if (megabytes != chessEngine.getTranspositionTable().getMegabytes()) {
+                    
+                    final ChessEngine previous = chessEngine;
+                    
+                    chessEngine = newChessEngine(megabytes, previous.getThreads());
+                    
+                    chessEngine.setOpeningBook(previous.getOpeningBook());
+                    
+                    chessEngine.setTablebase(previous.getTablebase());
+                    
+                    previous.shutdown();
+                    
+                }
+                
+            }
+            
+            case "threads" -> chessEngine.setThreads(parseInt(value));
+            
+            case "bookfile" -> {
+                
+                try {
+                    
+                    chessEngine.setOpeningBook((value.isEmpty() || value.equals("<empty>")) ? null : ChessOpeningBook.open(Path.of(value)));
+                    
+                } catch (final IOException ioException) {
+                    
+                    throw new IllegalArgumentException("cannot open opening book " + value + ": " + ioException.getMessage());
+                    
+                }
+                
+            }
+            
+            case "tablebasepath" -> {
+                
+                try {
+                    
+                    chessEngine.setTablebase((value.isEmpty() || value.equals("<empty>")) ? null : ChessTablebase.open(Path.of(value)));
+                    
+                } catch (final IOException ioException) {
+                    
+                    throw new IllegalArgumentException("cannot open tablebase " + value + ": " + ioException.getMessage());
+                    
+                }
+                
+            }
+            
+            default -> throw new IllegalArgumentException("unknown option " + name);
+            
+        }
+        
+    }
+    
+    // position (startpos | fen <fen>) [moves <move>...]
+    private void setPosition(final String[] tokens) {
+        
+        if (tokens.length < 2) {
+            
+            throw new IllegalArgumentException("position needs startpos or fen");
+            
+        }
+        
+        final List<String> words = Arrays.asList(tokens);
+        
+        final int movesIndex = words.indexOf("moves");
+        
+        final int end = (movesIndex < 0) ? tokens.length : movesIndex;
+        
+        final ChessPosition start;
+        
+        if (tokens[1].equals("startpos")) {
+            
+            start = ChessPosition.startPosition();
+            
+        } else if (tokens[1].equals("fen")) {
+            
+            start = ChessFen.parse(String.join(" ", words.subList(2, end)));
+            
+        } else {
+            
+            throw new IllegalArgumentException("position needs startpos or fen, got " + tokens[1]);
+            
+        }
+        
+        for (int i = end + 1; i < tokens.length; i++) {
+            
+            final int move = findMove(start, tokens[i]);
+            
+            if (move == ChessMove.NO_MOVE) {
+                
+                throw new IllegalArgumentException("illegal move " + tokens[i] + " in " + ChessFen.toFen(start));
+                
+            }
+            
+            start.makeMove(move);
+            
+        }
+        
+        chessPosition.copyFrom(start);
+        
+    }
+    
+    // go [depth <plies>] [movetime <ms>] [wtime <ms>] [btime <ms>] [winc <ms>] [binc <ms>] [movestogo <moves>] [infinite]
+    private void go(final String[] tokens) {
+        
+        int depth = ChessEngine.DEFAULT_MAX_DEPTH;
+        
+        long moveTime = -1L;
+        
+        final long[] times = {-1L, -1L};
+        
+        final long[] increments = {0L, 0L};
+        
+        int movesToGo = DEFAULT_MOVES_TO_GO;
+        
+        boolean infiniteSearch = false;
+        
+        for (int i = 1; i < tokens.length; i++) {
+            
+            switch (tokens[i]) {
+                
+                case "infinite" -> infiniteSearch = true;
+                
+                case "depth" -> depth = Math.min(parseInt(argument(tokens, ++i)), ChessSearch.MAX_PLY);
+                
+                case "movetime" -> {
+                    
+                    moveTime = parseLong(argument(tokens, ++i));
+                    
+                    if (moveTime < 0L) {
+                        
+                        throw new IllegalArgumentException("move time cannot be negative");
+                        
+                    }
+                    
+                }
+                
+                case "wtime" -> times[ChessPosition.WHITE] = parseLong(argument(tokens, ++i));
+                
+                case "btime" -> times[ChessPosition.BLACK] = parseLong(argument(tokens, ++i));
+                
+                case "winc" -> increments[ChessPosition.WHITE] = parseLong(argument(tokens, ++i));
+                
+                case "binc" -> increments[ChessPosition.BLACK] = parseLong(argument(tokens, ++i));
+                
+                case "movestogo" -> movesToGo = Math.max(1, parseInt(argument(tokens, ++i)));
+                
+                default -> {
+                    
+                    // nodes, mate, ponder and searchmoves are not supported
+                    
+                }
+                
+            }
+            
+        }
+        
+        // Checked before the search is marked as running, so a bad go leaves the next one free to start
+        
+        if (depth < 1) {
+            
+            throw new IllegalArgumentException("depth must be at least 1");
+            
+        }
+        
+        // An equal share of the clock over the moves to go plus most of the increment, never more than half
+        // of what is left
+        
+        final long time = times[chessPosition.getSideToMove()];
+        
+        final long increment = increments[chessPosition.getSideToMove()];
+        
+        if ((moveTime < 0L) && (time >= 0L)) {
+            
+            moveTime = Math.min((time / movesToGo) + ((increment * 3L) / 4L), time / 2L);
+            
+        }
+        
+        final long searchTime = (infiniteSearch || (moveTime < 0L)) ? 0L : Math.max(1L, moveTime - MOVE_OVERHEAD_MILLIS);
+        
+        if ((searchTime == 0L) && (depth == ChessEngine.DEFAULT_MAX_DEPTH)) {
+            
+            infiniteSearch = true;
+            
+        }
+        
+        synchronized (this) {
+            
+            if (searching) {
+                
+                throw new IllegalArgumentException("a search is already running");
+                
+            }
+            
+            searching = true;
+            
+            infinite = infiniteSearch;
+            
+            stopRequested = false;
+            
+            pendingBestMove = ChessMove.NO_MOVE;
+            
+        }
+        
+        chessEngine.setMaxDepth(depth);
+        
+        chessEngine.setMoveTimeMillis(searchTime);
+        
+        final var snapshot = new ChessPosition(chessPosition);
+        
+        chessEngine.findMove(snapshot).thenAccept(move -> finishSearch(snapshot, move));
+        
+    }
+    
+    private synchronized void stop() {
+        
+        stopRequested = true;
+        
+        if (pendingBestMove != ChessMove.NO_MOVE) {
+            
+            sendBestMove(pendingBestMove);
+            
+        } else if (searching) {
+            
+            chessEngine.cancel();
+            
+        }
+        
+    }
+    
+    // Called on the engine thread, or on the input thread for book and tablebase moves
+    private synchronized void finishSearch(final ChessPosition searchedPosition, final int move) {
+        
+        int bestMove = move;
+        
+        if (bestMove == ChessMove.NO_MOVE) {
+            
+            // Stopped before the first iteration finished
+            
+            final var moves = new int[ChessMove.MAX_MOVES];
+            
+            bestMove = (ChessMoveGenerator.generateLegalMoves(searchedPosition, moves, 0) > 0) ? moves[0] : ChessMove.NO_MOVE;
+            
+        }
+        
+        if (infinite && !stopRequested && (bestMove != ChessMove.NO_MOVE)) {
+            
+            pendingBestMove = bestMove;
+            
+            return;
+            
+        }
+        
+        sendBestMove(bestMove);
+        
+    }
+    
+    private void sendBestMove(final int move) {
+        
+        searching = false;
+        
+        pendingBestMove = ChessMove.NO_MOVE;
+        
+        send("bestmove " + ((move == ChessMove.NO_MOVE) ? "0000" : ChessMove.toString(move)));
+        
+    }
+    
+    private synchronized boolean isSearching() {
+        
+        return searching;
+    }
+    
+    private void sendInfo(final ChessEngine.SearchInfo searchInfo) {
+        
+        final var info = new StringBuilder("info depth ").append(searchInfo.depth());
+        
+        if (searchInfo.isMate()) {
+            
+            final int plies = searchInfo.getMatePlies();
+            
+            info.append(" score mate ").append((plies > 0) ? ((plies + 1) / 2) : -((1 - plies) / 2));
+            
+        } else {
+            
+            info.append(" score cp ").append(searchInfo.score());
+            
+        }
+        
+        info.append(" nodes ").append(searchInfo.nodes())
+                .append(" nps ").append(searchInfo.getNodesPerSecond())
+                .append(" hashfull ").append(searchInfo.hashFull())
+                .append(" time ").append(searchInfo.getTimeMillis())
+                .append(" pv");
+        
+        for (final int move : searchInfo.principalVariation()) {
+            
+            info.append(' ').append(ChessMove.toString(move));
+            
+        }
+        
+        send(info.toString());
+        
+    }
+    
+    // Lines from the input and engine threads never interleave
+    private void send(final String line) {
+        
+        synchronized (out) {
+            
+            out.println(line);
+            
+            out.flush();
+            
+        }
+        
+    }
+    
+    private ChessEngine newChessEngine(final int hashMegabytes, final int threads) {
+        
+        if ((hashMegabytes < 1) || (hashMegabytes > MAX_HASH_MEGABYTES)) {
+            
+            throw new IllegalArgumentException("hash must be between 1 and " + MAX_HASH_MEGABYTES + " MB");
+            
+        }
+        
+        final var engine = new ChessEngine(new ChessTranspositionTable(hashMegabytes));
+        
+        engine.setThreads(threads);
+        
+        engine.setInfoListener(this::sendInfo);
+        
+        return engine;
+    }
+    
+    private int findMove(final ChessPosition position, final String name) {
+        
+        final int legalMoveCount = ChessMoveGenerator.generateLegalMoves(position, legalMoves, 0);
+        
+        for (int i = 0; i < legalMoveCount; i++) {
+            
+            if (ChessMove.toString(legalMoves[i]).equals(name)) {
+                
+                return legalMoves[i];
+                
+            }
+            
+        }
+        
+        return ChessMove.NO_MOVE;
+    }
+    
+    // Value that must follow a go parameter
+    private static String argument(final String[] tokens, final int index) {
+        
+        if (index >= tokens.length) {
+            
+            throw new IllegalArgumentException("missing value after " + tokens[index - 1]);
+            
+        }
+        
+        return tokens[index];
+    }
+    
+    private static int parseInt(final String value) {
+        
+        try {
+            
+            return Integer.parseInt(value);
+            
+        } catch (final NumberFormatException numberFormatException) {
+            
+            throw new IllegalArgumentException("not a number: " + value);
+            
+        }
+        
+    }
+    
+    private static long parseLong(final String value) {
+        
+        try {
+            
+            return Long.parseLong(value);
+            
+        } catch (final NumberFormatException numberFormatException) {
+            
+            throw new IllegalArgumentException("not a number: " + value);
+            
+        }
+        
+    }
+    
+    public static void main(final String[] args) throws IOException {
+        
+        new ChessUci(System.in, System.out).run();
+        
+    }
+    
+}
\ No newline at end of file